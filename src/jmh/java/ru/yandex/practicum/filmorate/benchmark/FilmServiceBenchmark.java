@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.FilmTrends;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Топ популярных фильмов на каталогах разного размера; в среднем пять лайков на фильм.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FilmServiceBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    @Param({"10", "100"})
+    public int count;
+
+    private FilmService filmService;
+
+    @Setup
+    public void setUp() {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        UserStorage userStorage = new InMemoryUserStorage();
+        filmService = new FilmService(filmStorage,
+                new UserService(userStorage, Fixtures.recommender(userStorage, false)),
+                Fixtures.filmRecommender(filmStorage), new FilmTrends(filmStorage));
+        for (int i = 0; i < catalogSize; i++) {
+            filmStorage.create(Fixtures.film(i));
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < catalogSize * 5; i++) {
+            filmStorage.addLike((long) random.nextInt(catalogSize) + 1, (long) random.nextInt(catalogSize) + 1);
+        }
+    }
+
+    @Benchmark
+    public Collection<Film> getPopular() {
+        return filmService.getPopular(count);
+    }
+}
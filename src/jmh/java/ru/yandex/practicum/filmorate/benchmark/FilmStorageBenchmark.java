@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Базовые операции {@link InMemoryFilmStorage}: создание и чтение по id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilmStorageBenchmark {
+    @Param({"1000", "1000000"})
+    public int catalogSize;
+
+    private InMemoryFilmStorage filmStorage;
+    private Film template;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        for (int i = 0; i < catalogSize; i++) {
+            filmStorage.create(Fixtures.film(i));
+        }
+        template = Fixtures.film(0);
+    }
+
+    @Benchmark
+    public Film create() {
+        Film film = new Film();
+        film.setName(template.getName());
+        film.setDescription(template.getDescription());
+        film.setReleaseDate(template.getReleaseDate());
+        film.setDuration(template.getDuration());
+        return filmStorage.create(film);
+    }
+
+    @Benchmark
+    public Film getById() {
+        return filmStorage.getById((long) ThreadLocalRandom.current().nextInt(catalogSize) + 1);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmRecommender;
+import ru.yandex.practicum.filmorate.service.FriendRecommender;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    static Film film(int i) {
+        Film film = new Film();
+        film.setName("Фильм " + i);
+        film.setDescription("Описание фильма " + i);
+        film.setReleaseDate(LocalDate.of(1990 + i % 30, 1 + i % 12, 1));
+        film.setDuration(60 + i % 120);
+        return film;
+    }
+
+    static User user(int i) {
+        User user = new User();
+        user.setEmail("user" + i + "@yandex.ru");
+        user.setLogin("user" + i);
+        user.setBirthday(LocalDate.of(1970 + i % 40, 1 + i % 12, 1));
+        return user;
+    }
+
+    /**
+     * Рекомендатель с настройками из application.properties, без контекста Spring.
+     */
+    static FriendRecommender recommender(UserStorage userStorage, boolean cacheEnabled) {
+        FriendRecommender recommender = new FriendRecommender(userStorage);
+        ReflectionTestUtils.setField(recommender, "maxFanOut", 500);
+        ReflectionTestUtils.setField(recommender, "maxLimit", 100);
+        ReflectionTestUtils.setField(recommender, "cacheEnabled", cacheEnabled);
+        recommender.start();
+        return recommender;
+    }
+
+    static FilmRecommender filmRecommender(FilmStorage filmStorage) {
+        FilmRecommender recommender = new FilmRecommender(filmStorage);
+        ReflectionTestUtils.setField(recommender, "topK", 50);
+        ReflectionTestUtils.setField(recommender, "maxFanOut", 500);
+        recommender.start();
+        return recommender;
+    }
+}
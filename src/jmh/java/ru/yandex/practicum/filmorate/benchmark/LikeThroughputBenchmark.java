@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность {@link FilmStorage#addLike} при 1, 4 и 16 потоках.
+ * Каждый вызов добавляет новый лайк: потоки чередуют id пользователей, не пересекаясь.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LikeThroughputBenchmark {
+    private static final int FILMS = 1_000;
+
+    private FilmStorage filmStorage;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        for (int i = 0; i < FILMS; i++) {
+            filmStorage.create(Fixtures.film(i));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addLike1(LikeState state) {
+        addLike(state);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addLike4(LikeState state) {
+        addLike(state);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void addLike16(LikeState state) {
+        addLike(state);
+    }
+
+    private void addLike(LikeState state) {
+        long userId = state.nextUserId;
+        state.nextUserId += state.step;
+        filmStorage.addLike((long) ThreadLocalRandom.current().nextInt(FILMS) + 1, userId);
+    }
+
+    @State(Scope.Thread)
+    public static class LikeState {
+        private long nextUserId;
+        private long step;
+
+        @Setup(Level.Iteration)
+        public void setUp(ThreadParams params) {
+            nextUserId = params.getThreadIndex() + 1;
+            step = params.getThreadCount();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * «Возможно, вы знакомы» для пользователя с {@code degree} друзьями в случайном графе
+ * из 100 000 пользователей со средней степенью 50. {@code withUpdate} перед запросом меняет дружбу
+ * одного из друзей, сбрасывая закэшированный результат.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RecommendationBenchmark {
+    private static final int USERS = 100_000;
+    private static final int AVERAGE_DEGREE = 50;
+
+    @Param({"1000", "5000"})
+    public int degree;
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private UserStorage userStorage;
+    private UserService userService;
+    private long[] friends;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        userStorage = new InMemoryUserStorage();
+        userService = new UserService(userStorage, Fixtures.recommender(userStorage, cache));
+        for (int i = 0; i < USERS; i++) {
+            userStorage.create(Fixtures.user(i));
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < USERS * AVERAGE_DEGREE / 2; i++) {
+            long user = (long) random.nextInt(USERS) + 1;
+            long friend = (long) random.nextInt(USERS) + 1;
+            if (user != friend) userStorage.addFriend(user, friend);
+        }
+        while (userStorage.getById(1L).getFriends().size() < degree) {
+            userStorage.addFriend(1L, (long) random.nextInt(USERS - 1) + 2);
+        }
+        friends = userStorage.getById(1L).getFriends().toLongArray();
+        userService.getRecommendations(1L, 10);
+    }
+
+    @Benchmark
+    public List<User> recommend() {
+        return userService.getRecommendations(1L, 10);
+    }
+
+    @Benchmark
+    public List<User> withUpdate() {
+        long friend = friends[next++ % friends.length];
+        if (userStorage.getById(friend).getFriends().contains(USERS)) {
+            userStorage.removeFriend(friend, (long) USERS);
+        } else {
+            userStorage.addFriend(friend, (long) USERS);
+        }
+        return userService.getRecommendations(1L, 10);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация ответа {@code /films} из 10 000 фильмов с лайками в JSON, Smile и CBOR:
+ * время на ответ и размер тела ({@code bytes} во вспомогательных счётчиках JMH).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    private static final int FILMS = 10_000;
+    private static final int USERS = 50_000;
+    private static final int LIKES_PER_FILM = 50;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private Collection<Film> films;
+
+    /**
+     * Размер последнего ответа в байтах.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+        public long bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JsonFactory factory = switch (format) {
+            case "smile" -> new SmileFactory();
+            case "cbor" -> new CBORFactory();
+            default -> new JsonFactory();
+        };
+        // Те же настройки дат, что у ObjectMapper Spring Boot.
+        mapper = new ObjectMapper(factory)
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        Random random = new Random(42);
+        for (int i = 0; i < FILMS; i++) {
+            Film film = filmStorage.create(Fixtures.film(i));
+            for (int j = 0; j < LIKES_PER_FILM; j++) {
+                filmStorage.addLike(film.getId(), (long) random.nextInt(USERS) + 1);
+            }
+        }
+        films = filmStorage.findAll();
+    }
+
+    @Benchmark
+    public byte[] serialize(Payload payload) throws IOException {
+        byte[] body = mapper.writeValueAsBytes(films);
+        payload.bytes = body.length;
+        return body;
+    }
+}
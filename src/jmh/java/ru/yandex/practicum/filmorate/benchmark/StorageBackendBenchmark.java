@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.JdbcFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.JdbcUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Сравнение хранилища в памяти и JDBC-хранилища на H2 в памяти процесса: популярные фильмы,
+ * друзья и общие друзья, пакет лайков. Для JDBC операции идут в транзакции, как под прокси Spring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBackendBenchmark {
+    private static final int FILMS = 10_000;
+    private static final int USERS = 2_000;
+    private static final int LIKES_PER_FILM = 20;
+    private static final int FRIENDS_PER_USER = 20;
+    private static final int BATCH = 100;
+
+    @Param({"memory", "jdbc"})
+    public String backend;
+
+    private FilmStorage filmStorage;
+    private UserStorage userStorage;
+    private TransactionTemplate transactions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (backend.equals("jdbc")) {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+            new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+            NamedParameterJdbcTemplate jdbc = new NamedParameterJdbcTemplate(dataSource);
+            transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            JdbcFilmStorage films = new JdbcFilmStorage(jdbc);
+            ReflectionTestUtils.setField(films, "batchSize", 1000);
+            films.start();
+            JdbcUserStorage users = new JdbcUserStorage(jdbc);
+            ReflectionTestUtils.setField(users, "batchSize", 1000);
+            users.start();
+            filmStorage = films;
+            userStorage = users;
+        } else {
+            filmStorage = new InMemoryFilmStorage();
+            userStorage = new InMemoryUserStorage();
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < USERS; i++) {
+            userStorage.create(Fixtures.user(i));
+        }
+        for (int i = 0; i < FILMS; i++) {
+            Film film = filmStorage.create(Fixtures.film(i));
+            LongSet likes = new LongSet();
+            // Степенное распределение: у немногих фильмов почти все лайки.
+            int count = (int) (LIKES_PER_FILM * Math.pow(random.nextDouble(), 3) * 4);
+            for (int j = 0; j < count; j++) {
+                likes.add(random.nextInt(USERS) + 1);
+            }
+            inTransaction(() -> {
+                filmStorage.applyLikes(film.getId(), likes, new LongSet());
+                return null;
+            });
+        }
+        for (int i = 1; i <= USERS; i++) {
+            for (int j = 0; j < FRIENDS_PER_USER / 2; j++) {
+                long friendId = random.nextInt(USERS) + 1;
+                if (friendId != i) userStorage.addFriend((long) i, friendId);
+            }
+        }
+    }
+
+    @Benchmark
+    public Collection<Film> popular() {
+        return filmStorage.getPopular(10);
+    }
+
+    @Benchmark
+    public List<User> friends() {
+        return userStorage.getFriends(randomUser());
+    }
+
+    @Benchmark
+    public List<User> commonFriends() {
+        return userStorage.getCommonFriends(randomUser(), randomUser());
+    }
+
+    @Benchmark
+    public Object applyLikes() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long filmId = random.nextInt(FILMS) + 1;
+        LongSet additions = new LongSet();
+        LongSet removals = new LongSet();
+        for (int i = 0; i < BATCH; i++) {
+            additions.add(random.nextInt(USERS) + 1);
+            removals.add(random.nextInt(USERS) + 1);
+        }
+        removals.removeAll(additions);
+        return inTransaction(() -> {
+            filmStorage.applyLikes(filmId, additions, removals);
+            return filmId;
+        });
+    }
+
+    private long randomUser() {
+        return ThreadLocalRandom.current().nextInt(USERS) + 1;
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        return transactions != null ? transactions.execute(status -> action.get()) : action.get();
+    }
+}
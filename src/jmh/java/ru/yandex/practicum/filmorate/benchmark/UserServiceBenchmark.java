@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Друзья и общие друзья при разной степени вершины в графе из 100 000 пользователей.
+ * Половина друзей второго пользователя совпадает с друзьями первого.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserServiceBenchmark {
+    private static final int USERS = 100_000;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int degree;
+
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        UserStorage userStorage = new InMemoryUserStorage();
+        userService = new UserService(userStorage, Fixtures.recommender(userStorage, false));
+        for (int i = 0; i < USERS; i++) {
+            userStorage.create(Fixtures.user(i));
+        }
+        Random random = new Random(1);
+        long first = 1;
+        long second = 2;
+        while (userStorage.getById(first).getFriends().size() < degree) {
+            long friend = (long) random.nextInt(USERS - 2) + 3;
+            userStorage.addFriend(first, friend);
+            if (random.nextBoolean()) {
+                userStorage.addFriend(second, friend);
+            }
+        }
+        while (userStorage.getById(second).getFriends().size() < degree) {
+            userStorage.addFriend(second, (long) random.nextInt(USERS - 2) + 3);
+        }
+    }
+
+    @Benchmark
+    public Collection<User> getFriends() {
+        return userService.getFriends(1L);
+    }
+
+    @Benchmark
+    public Collection<User> getCommonFriends() {
+        return userService.getCommonFriends(1L, 2L);
+    }
+}
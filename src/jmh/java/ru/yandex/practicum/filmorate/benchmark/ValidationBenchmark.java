@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.validation.beanvalidation.MethodValidationInterceptor;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Marker;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создание, обновление и лайк фильма с проверкой тела на границе.
+ * {@code before} воспроизводит прежнюю схему: хранилище за прокси проверки методов
+ * и повторная проверка даты выхода с новым {@link LocalDate} на каждый вызов; {@code after} — текущую.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+    private static final int CATALOG = 10_000;
+
+    @Param({"before", "after"})
+    public String pipeline;
+
+    private Validator validator;
+    private FilmStorage filmStorage;
+    private boolean legacy;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        legacy = pipeline.equals("before");
+        FilmStorage storage = new InMemoryFilmStorage();
+        if (legacy) {
+            ProxyFactory proxy = new ProxyFactory(storage);
+            proxy.addAdvice(new MethodValidationInterceptor(validator));
+            storage = (FilmStorage) proxy.getProxy();
+        }
+        filmStorage = storage;
+        for (int i = 0; i < CATALOG; i++) {
+            filmStorage.create(Fixtures.film(i));
+        }
+    }
+
+    @Benchmark
+    public Film create() {
+        Film film = Fixtures.film(ThreadLocalRandom.current().nextInt(CATALOG));
+        check(film, Marker.OnCreate.class);
+        return filmStorage.create(film);
+    }
+
+    @Benchmark
+    public Film update() {
+        int i = ThreadLocalRandom.current().nextInt(CATALOG);
+        Film film = Fixtures.film(i);
+        film.setId(i + 1L);
+        check(film, Marker.OnUpdate.class);
+        return filmStorage.update(film);
+    }
+
+    @Benchmark
+    public void addLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        filmStorage.addLike(random.nextInt(CATALOG) + 1L, random.nextInt(CATALOG) + 1L);
+    }
+
+    private void check(Film film, Class<?> group) {
+        Set<ConstraintViolation<Film>> violations = validator.validate(film, group);
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException(violations.toString());
+        }
+        if (legacy && film.getReleaseDate().isBefore(LocalDate.of(1895, Month.DECEMBER, 28))) {
+            throw new IllegalStateException("release date");
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.zalando.logbook.Correlation;
+import org.zalando.logbook.HttpLogWriter;
+import org.zalando.logbook.Precorrelation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пишет журнал запросов в отдельном потоке. Поток запроса только кладёт готовую строку в ограниченную очередь
+ * и никогда не ждёт: если очередь заполнена, запись отбрасывается и учитывается в метрике.
+ */
+public class AsyncHttpLogWriter implements HttpLogWriter, MeterBinder, Closeable {
+    private final HttpLogWriter delegate;
+    private final BlockingQueue<Entry> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread worker;
+    private volatile boolean closed;
+
+    public AsyncHttpLogWriter(HttpLogWriter delegate, int capacity) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::run, "logbook-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public boolean isActive() {
+        return delegate.isActive();
+    }
+
+    @Override
+    public void write(Precorrelation precorrelation, String request) {
+        enqueue(new Entry(precorrelation, null, request));
+    }
+
+    @Override
+    public void write(Correlation correlation, String response) {
+        enqueue(new Entry(null, correlation, response));
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.logbook.dropped", this, AsyncHttpLogWriter::getDropped)
+                .description("Записей журнала запросов, отброшенных из-за переполнения очереди")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        if (closed || !queue.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void run() {
+        while (!closed || !queue.isEmpty()) {
+            Entry entry;
+            try {
+                entry = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (entry == null) {
+                continue;
+            }
+            try {
+                if (entry.correlation() != null) {
+                    delegate.write(entry.correlation(), entry.message());
+                } else {
+                    delegate.write(entry.precorrelation(), entry.message());
+                }
+            } catch (IOException | RuntimeException ignore) {
+                // Сбой записи журнала не должен останавливать поток записи.
+            }
+        }
+    }
+
+    private record Entry(Precorrelation precorrelation, Correlation correlation, String message) {
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Strategy;
+import org.zalando.logbook.core.Conditions;
+import org.zalando.logbook.core.DefaultHttpLogWriter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Настройка журнала запросов. По умолчанию логируется всё; профиль {@code prod} включает выборку,
+ * исключение путей, ограничение размера тел и асинхронную запись.
+ */
+@Configuration
+public class LogbookConfig {
+
+    /**
+     * Решение принимается один раз на запрос: отклонённый запрос не буферизуется и не форматируется вовсе.
+     * Заменяет условие из {@code logbook.predicate.*}, поэтому исключения путей задаются здесь.
+     */
+    @Bean
+    public Predicate<HttpRequest> requestCondition(
+            @Value("${filmorate.logging.exclude-paths:}") List<String> excludePaths,
+            @Value("${filmorate.logging.sample-rate:1.0}") double sampleRate) {
+        Predicate<HttpRequest> excluded = excludePaths.stream()
+                .map(Conditions::<HttpRequest>requestTo)
+                .reduce(Predicate::or)
+                .orElse(request -> false);
+        return request -> !excluded.test(request)
+                && (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Потоковые ответы (NDJSON, SSE ленты изменений) логируются без тела: иначе Logbook накопит весь поток
+     * в памяти на всё время подписки.
+     */
+    @Bean
+    public Strategy logbookStrategy() {
+        return new Strategy() {
+            @Override
+            public HttpResponse process(HttpRequest request, HttpResponse response) throws IOException {
+                if (isStream(request.getHeaders().getFirst("Accept")) || isStream(response.getContentType())) {
+                    return response.withoutBody();
+                }
+                return response.withBody();
+            }
+        };
+    }
+
+    private static boolean isStream(String mediaType) {
+        return mediaType != null && (mediaType.contains(MediaType.APPLICATION_NDJSON_VALUE)
+                || mediaType.contains(MediaType.TEXT_EVENT_STREAM_VALUE));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.logging.async", havingValue = "true")
+    public AsyncHttpLogWriter asyncHttpLogWriter(@Value("${filmorate.logging.queue-capacity:10000}") int capacity) {
+        return new AsyncHttpLogWriter(new DefaultHttpLogWriter(), capacity);
+    }
+}
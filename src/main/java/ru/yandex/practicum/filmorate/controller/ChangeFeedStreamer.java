@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.service.ChangeFeed;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отдаёт ленту изменений как SSE: у каждого события {@code id} — момент запуска и номер, поэтому после обрыва
+ * клиент продолжает с заголовком {@code Last-Event-ID}, а номер от прежнего запуска распознаётся как пропуск. Каждый подписчик читает ленту в своём виртуальном потоке:
+ * медленный клиент задерживает только себя. Если клиент отстал больше чем на размер буфера, ему приходит
+ * событие {@code gap} с номером, с которого лента продолжается, — изменения до него нужно перечитать целиком.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ChangeFeedStreamer {
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_WAIT_MILLIS = 15_000;
+    // Номера ленты живут только в памяти, поэтому в id события входит момент запуска, как в ETags.
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private final ChangeFeed changeFeed;
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    @Value("${feed.max-subscribers:64}")
+    private int maxSubscribers;
+
+    /**
+     * Подписка с события после {@code after}; {@code null} — только новые изменения.
+     */
+    public SseEmitter subscribe(Long after) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Слишком много подписчиков ленты");
+        }
+        SseEmitter emitter = new SseEmitter();
+        Thread worker = Thread.ofVirtual()
+                .name("change-feed")
+                .unstarted(() -> {
+                    try {
+                        stream(emitter, after != null ? after : changeFeed.head());
+                    } finally {
+                        subscribers.decrementAndGet();
+                    }
+                });
+        emitter.onCompletion(worker::interrupt);
+        emitter.onTimeout(worker::interrupt);
+        emitter.onError(error -> worker.interrupt());
+        worker.start();
+        return emitter;
+    }
+
+    /**
+     * Номер события из {@code Last-Event-ID}; id другого запуска или нечитаемый — номер за концом ленты,
+     * и клиент получит пропуск.
+     */
+    public static long offsetOf(String eventId) {
+        String prefix = EPOCH + "-";
+        if (eventId.startsWith(prefix)) {
+            try {
+                long offset = Long.parseLong(eventId.substring(prefix.length()));
+                if (offset >= 0) return offset;
+            } catch (NumberFormatException e) {
+                // Чужой формат: как и id другого запуска.
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private void stream(SseEmitter emitter, long after) {
+        long cursor = after;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ChangeFeed.Batch batch = changeFeed.read(cursor, BATCH_SIZE);
+                if (batch.gap()) {
+                    // Пусто бывает, если лента после перезапуска ещё не дошла до номера клиента: продолжаем с начала.
+                    long from = batch.entries().isEmpty() ? 1 : batch.entries().get(0).offset();
+                    emitter.send(SseEmitter.event().name("gap").data(from));
+                    cursor = from - 1;
+                }
+                for (ChangeFeed.Entry entry : batch.entries()) {
+                    emitter.send(SseEmitter.event()
+                            .id(EPOCH + "-" + entry.offset())
+                            .data(entry.event(), MediaType.APPLICATION_JSON));
+                    cursor = entry.offset();
+                }
+                if (batch.entries().isEmpty()) {
+                    changeFeed.await(cursor, IDLE_WAIT_MILLIS);
+                    if (changeFeed.head() == cursor) {
+                        // Комментарий-пульс: так обрыв соединения обнаруживается и без новых событий.
+                        emitter.send(SseEmitter.event().comment("ping"));
+                    }
+                }
+            }
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // Клиент отключился или ответ уже завершён.
+            emitter.completeWithError(e);
+        } catch (InterruptedException e) {
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+
+/**
+ * Строгие ETag из номеров версий. Версии хранятся только в памяти и после перезапуска начинаются заново,
+ * поэтому в тег входит момент запуска: старые теги клиентов не совпадут с новыми.
+ */
+final class ETags {
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+    private ETags() {
+    }
+
+    static String of(String kind, long version) {
+        return "\"" + kind + "-" + EPOCH + "-" + version + "\"";
+    }
+
+    /**
+     * Условный GET для ответа, формат которого выбирается по {@code Accept}. JSON, Smile и CBOR — разные байты
+     * одной версии, поэтому формат входит в тег, а {@code Vary: Accept} ставится и на ответ 304.
+     */
+    static boolean checkNotModified(WebRequest request, String kind, long version) {
+        if (request instanceof NativeWebRequest nativeRequest) {
+            HttpServletResponse response = nativeRequest.getNativeResponse(HttpServletResponse.class);
+            if (response != null) response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return request.checkNotModified(of(kind + "-" + format(request.getHeader(HttpHeaders.ACCEPT)), version));
+    }
+
+    /**
+     * Формат, который выберет согласование: первый по качеству и специфичности тип из {@code Accept},
+     * совместимый с одним из конвертеров; без заголовка — JSON.
+     */
+    static String format(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return "json";
+        }
+        List<MediaType> types;
+        try {
+            types = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return "json";
+        }
+        MimeTypeUtils.sortBySpecificity(types);
+        for (MediaType type : types) {
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) return "json";
+            if (type.isCompatibleWith(SMILE)) return "smile";
+            if (type.isCompatibleWith(MediaType.APPLICATION_CBOR)) return "cbor";
+        }
+        return "json";
+    }
+}
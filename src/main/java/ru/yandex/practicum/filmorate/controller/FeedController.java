@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/feed")
+@RequiredArgsConstructor
+@Validated
+public class FeedController {
+    private final ChangeFeedStreamer changeFeedStreamer;
+
+    /**
+     * Поток изменений после события {@code after}; при переподключении номер берётся из {@code Last-Event-ID}.
+     * Без обоих — только изменения с момента подписки.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam(required = false) @PositiveOrZero Long after,
+                                @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeedStreamer.subscribe(lastEventId != null ? ChangeFeedStreamer.offsetOf(lastEventId) : after);
+    }
+}
@@ -1,13 +1,32 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperationResult;
 import ru.yandex.practicum.filmorate.model.Marker;
+import ru.yandex.practicum.filmorate.model.NotAfter;
+import ru.yandex.practicum.filmorate.model.NotBefore;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.PopularResponseCache;
 
+import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/films")
@@ -15,10 +34,29 @@ import java.util.Collection;
 @Validated
 public class FilmController {
     private final FilmService filmService;
+    private final NdjsonStreamer ndjsonStreamer;
+    private final PopularResponseCache popularResponseCache;
 
+    /**
+     * Без параметров возвращает все записи; с {@code after} или {@code limit} — страницу по курсору (id);
+     * с {@code ids} — записи с перечисленными id в том же порядке, несуществующие пропускаются.
+     */
     @GetMapping
-    public Collection<Film> findAll() {
-        return filmService.findAll();
+    public Collection<Film> findAll(@RequestParam(required = false) @PositiveOrZero Long after,
+                                    @RequestParam(required = false) @Positive @Max(1000) Integer limit,
+                                    @RequestParam(required = false) @Size(max = 1000) List<Long> ids) {
+        if (ids != null) {
+            return filmService.getByIds(ids);
+        }
+        if (after == null && limit == null) {
+            return filmService.findAll();
+        }
+        return filmService.findPage(after, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody stream(@RequestParam(defaultValue = "0") @PositiveOrZero long after) {
+        return ndjsonStreamer.stream(after, filmService::findPage, Film::getId);
     }
 
     @PostMapping
@@ -27,14 +65,17 @@ public class FilmController {
     }
 
     @PutMapping
-    @Validated(Marker.OnUpdate.class)
     public Film update(@Validated(Marker.OnUpdate.class) @RequestBody Film film) {
         return filmService.update(film);
     }
 
     @GetMapping("/{id}")
-    public Film getById(@PathVariable Long id) {
-        return filmService.getById(id);
+    public Film getById(@PathVariable Long id, WebRequest request) {
+        Film film = filmService.getById(id);
+        if (ETags.checkNotModified(request, "film", film.getVersion())) {
+            return null;
+        }
+        return film;
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -47,8 +88,105 @@ public class FilmController {
         filmService.removeLike(id, userId);
     }
 
+    @PostMapping("/likes/batch")
+    public List<LikeOperationResult> applyLikes(@RequestBody List<LikeOperation> operations) {
+        return filmService.applyLikes(operations);
+    }
+
+    @GetMapping("/{id}/similar")
+    public Collection<Film> getSimilar(@PathVariable Long id,
+                                      @RequestParam(required = false) @Positive @Max(100) Integer count) {
+        return filmService.getSimilar(id, count);
+    }
+
+    @GetMapping("/trending")
+    public Collection<Film> getTrending(@RequestParam(defaultValue = "24h") String window,
+                                        @RequestParam(defaultValue = "${popular.default-count}") @Positive Integer count) {
+        return filmService.getTrending(window, count);
+    }
+
+    /**
+     * JSON без фильтров отдаётся готовыми байтами из {@link PopularResponseCache}, сжатыми, если клиент
+     * принимает gzip; остальные варианты (фильтры, Smile, CBOR) сериализуются как обычно.
+     */
     @GetMapping("/popular")
-    public Collection<Film> getPopular(@RequestParam(defaultValue = "${popular.default-count}") Integer count) {
-        return filmService.getPopular(count);
+    public ResponseEntity<?> getPopular(@RequestParam(defaultValue = "${popular.default-count}") Integer count,
+                                        @RequestParam(required = false) @Min(1895) @Max(9999) Integer year,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE)
+                                        @NotBefore("1895-01-01") @NotAfter("9999-12-31") LocalDate from,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE)
+                                        @NotBefore("1895-01-01") @NotAfter("9999-12-31") LocalDate to,
+                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                        String acceptEncoding,
+                                        WebRequest request) {
+        if (year == null && from == null && to == null && popularResponseCache.supports(count) && prefersJson(accept)) {
+            PopularResponseCache.Body body = popularResponseCache.get(count, acceptsGzip(acceptEncoding));
+            // Тег — номер сборки тела: тело из кэша может отставать от каталога, и тег отстаёт вместе с ним.
+            // Сжатое и несжатое тело — разные байты, поэтому и теги у них разные.
+            String kind = body.gzipped() ? "popular-body-gz" : "popular-body";
+            if (request.checkNotModified(ETags.of(kind, body.build()))) {
+                return null;
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+            if (body.gzipped()) {
+                response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            return response.body(body.bytes());
+        }
+        // Версия читается до построения ответа: тело может оказаться новее тега, но не наоборот.
+        if (ETags.checkNotModified(request, "popular", filmService.getCatalogVersion())) {
+            return null;
+        }
+        return ResponseEntity.ok(filmService.getPopular(count, year, from, to));
+    }
+
+    /**
+     * gzip назван в {@code Accept-Encoding} (или разрешён через {@code *}) с ненулевым {@code q}.
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            boolean accepted = quality(parts) > 0;
+            if (name.equalsIgnoreCase("gzip")) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static double quality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Клиент не указал формат или первым в {@code Accept} назван JSON (в том числе через {@code *}{@code /*}).
+     */
+    private static boolean prefersJson(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return true;
+        }
+        List<MediaType> types = MediaType.parseMediaTypes(accept);
+        return types.isEmpty() || types.get(0).isCompatibleWith(MediaType.APPLICATION_JSON);
     }
 }
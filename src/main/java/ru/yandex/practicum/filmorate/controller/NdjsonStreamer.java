@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Отдаёт коллекцию в формате NDJSON (по объекту JSON на строку), читая хранилище страницами по курсору.
+ * В памяти одновременно держится только одна страница, а клиент получает данные по мере записи.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class NdjsonStreamer {
+    static final int PAGE_SIZE = 500;
+
+    private final ObjectMapper objectMapper;
+
+    public <T> StreamingResponseBody stream(long after, BiFunction<Long, Integer, List<T>> pages,
+                                            Function<T, Long> idOf) {
+        return out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                long cursor = after;
+                List<T> page;
+                do {
+                    page = pages.apply(cursor, PAGE_SIZE);
+                    for (T value : page) {
+                        generator.writeObject(value);
+                        generator.writeRaw('\n');
+                    }
+                    generator.flush();
+                    if (!page.isEmpty()) {
+                        cursor = idOf.apply(page.get(page.size() - 1));
+                    }
+                } while (page.size() == PAGE_SIZE);
+            }
+        };
+    }
+}
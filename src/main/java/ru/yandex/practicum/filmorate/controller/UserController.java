@@ -1,13 +1,23 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Marker;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/users")
@@ -15,10 +25,29 @@ import java.util.Collection;
 @Validated
 public class UserController {
     private final UserService userService;
+    private final FilmService filmService;
+    private final NdjsonStreamer ndjsonStreamer;
 
+    /**
+     * Без параметров возвращает все записи; с {@code after} или {@code limit} — страницу по курсору (id);
+     * с {@code ids} — записи с перечисленными id в том же порядке, несуществующие пропускаются.
+     */
     @GetMapping
-    public Collection<User> findAll() {
-        return userService.findAll();
+    public Collection<User> findAll(@RequestParam(required = false) @PositiveOrZero Long after,
+                                    @RequestParam(required = false) @Positive @Max(1000) Integer limit,
+                                    @RequestParam(required = false) @Size(max = 1000) List<Long> ids) {
+        if (ids != null) {
+            return userService.getByIds(ids);
+        }
+        if (after == null && limit == null) {
+            return userService.findAll();
+        }
+        return userService.findPage(after, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody stream(@RequestParam(defaultValue = "0") @PositiveOrZero long after) {
+        return ndjsonStreamer.stream(after, userService::findPage, User::getId);
     }
 
     @PostMapping
@@ -27,14 +56,17 @@ public class UserController {
     }
 
     @PutMapping
-    @Validated(Marker.OnUpdate.class)
     public User update(@Validated(Marker.OnUpdate.class) @RequestBody User user) {
         return userService.update(user);
     }
 
     @GetMapping("/{id}")
-    public User getById(@PathVariable Long id) {
-        return userService.getById(id);
+    public User getById(@PathVariable Long id, WebRequest request) {
+        User user = userService.getById(id);
+        if (ETags.checkNotModified(request, "user", user.getVersion())) {
+            return null;
+        }
+        return user;
     }
 
     @PutMapping("/{id}/friends/{friendId}")
@@ -48,12 +80,32 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public Collection<User> getFriends(@PathVariable Long id) {
+    public Collection<User> getFriends(@PathVariable Long id, WebRequest request) {
+        if (ETags.checkNotModified(request, "friends", userService.getFriendsVersion(id))) {
+            return null;
+        }
         return userService.getFriends(id);
     }
 
+    @GetMapping("/{id}/recommendations")
+    public Collection<User> getRecommendations(@PathVariable Long id,
+                                               @RequestParam(required = false) @Positive @Max(100) Integer count) {
+        return userService.getRecommendations(id, count);
+    }
+
+    @GetMapping("/{id}/recommended-films")
+    public Collection<Film> getRecommendedFilms(@PathVariable Long id,
+                                               @RequestParam(required = false) @Positive @Max(100) Integer count) {
+        return filmService.getRecommendedFilms(id, count);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     public Collection<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
         return userService.getCommonFriends(id, otherId);
     }
+
+    @GetMapping("/{id}/friends/common/{otherId}/count")
+    public int getCommonFriendsCount(@PathVariable Long id, @PathVariable Long otherId) {
+        return userService.getCommonFriendsCount(id, otherId);
+    }
 }
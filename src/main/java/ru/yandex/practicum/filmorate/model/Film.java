@@ -1,12 +1,13 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
+import ru.yandex.practicum.filmorate.util.LongSet;
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
 
 @Data
@@ -21,10 +22,21 @@ public class Film {
     private String description;
 
     @NotNull(groups = {Marker.OnCreate.class, Marker.OnUpdate.class}, message = "Дата релиза не может быть null")
+    @NotBefore(value = "1895-12-28", groups = {Marker.OnCreate.class, Marker.OnUpdate.class}, message = "Дата релиза не может быть раньше 28 декабря 1895 года")
     private LocalDate releaseDate;
 
     @Positive(groups = {Marker.OnCreate.class, Marker.OnUpdate.class}, message = "Продолжительность должна быть положительным числом")
     private Integer duration;
 
-    private Set<Long> likes = new HashSet<>();
+    private LongSet likes = new LongSet();
+
+    /**
+     * Номер последнего изменения, назначается хранилищем; служит основой ETag.
+     */
+    @JsonIgnore
+    private long version;
+
+    public void setLikes(Set<Long> likes) {
+        this.likes = likes != null ? LongSet.copyOf(likes) : new LongSet();
+    }
 }
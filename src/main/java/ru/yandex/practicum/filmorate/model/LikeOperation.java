@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+@Data
+public class LikeOperation {
+    private Long filmId;
+
+    private Long userId;
+
+    private Type op;
+
+    public enum Type {
+        ADD,
+        REMOVE
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+@Data
+public class LikeOperationResult {
+    private final Long filmId;
+
+    private final Long userId;
+
+    private final LikeOperation.Type op;
+
+    private final Status status;
+
+    public enum Status {
+        OK,
+        INVALID,
+        FILM_NOT_FOUND,
+        USER_NOT_FOUND
+    }
+}
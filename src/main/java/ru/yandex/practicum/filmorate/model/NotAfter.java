@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.model;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.time.LocalDate;
+
+/**
+ * Дата не позже {@link #value()} (ISO, {@code yyyy-MM-dd}); {@code null} считается допустимым.
+ * Граница разбирается один раз при инициализации валидатора, а не при каждой проверке.
+ */
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = NotAfter.Validator.class)
+public @interface NotAfter {
+    String value();
+
+    String message() default "Дата не может быть позже {value}";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+    class Validator implements ConstraintValidator<NotAfter, LocalDate> {
+        private LocalDate max;
+
+        @Override
+        public void initialize(NotAfter annotation) {
+            max = LocalDate.parse(annotation.value());
+        }
+
+        @Override
+        public boolean isValid(LocalDate value, ConstraintValidatorContext context) {
+            return value == null || !value.isAfter(max);
+        }
+    }
+}
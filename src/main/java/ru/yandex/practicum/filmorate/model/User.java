@@ -1,10 +1,11 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.*;
 import lombok.Data;
+import ru.yandex.practicum.filmorate.util.LongSet;
 
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
 
 @Data
@@ -26,5 +27,15 @@ public class User {
     @Past(groups = Marker.OnCreate.class, message = "Дата рождения не может быть в будущем")
     private LocalDate birthday;
 
-    private Set<Long> friends = new HashSet<>();
+    private LongSet friends = new LongSet();
+
+    /**
+     * Номер последнего изменения, назначается хранилищем; служит основой ETag.
+     */
+    @JsonIgnore
+    private long version;
+
+    public void setFriends(Set<Long> friends) {
+        this.friends = friends != null ? LongSet.copyOf(friends) : new LongSet();
+    }
 }
@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Лента изменений: события хранилищ (сохранение и удаление, лайки, дружба) с номерами 1, 2, 3…
+ * в кольцевом буфере ограниченного размера.
+ * <p>
+ * Запись не блокируется: номер берётся атомарным счётчиком, событие кладётся в ячейку кольца,
+ * а ждущих читателей, если они есть, будит отдельный поток — уже после того, как писатель отпустил
+ * блокировку хранилища. Ждут через {@link LockSupport#parkNanos}, без мониторов, так что виртуальный
+ * поток читателя не прикрепляется к несущему. Читатель идёт по своему номеру и сам отвечает
+ * за скорость; отставший больше чем на размер буфера получает признак пропуска и продолжает
+ * с самого старого сохранённого события, а писатели его не ждут.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ChangeFeed implements StorageListener {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Set<Thread> waiters = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean wakeScheduled = new AtomicBoolean();
+    private AtomicReferenceArray<Entry> slots;
+    private int mask;
+    private ExecutorService waker;
+
+    @Value("${feed.capacity:16384}")
+    private int capacity;
+
+    public record Entry(long offset, StorageEvent event) {
+    }
+
+    /**
+     * События после запрошенного номера; {@code gap} — часть событий уже вытеснена из буфера.
+     */
+    public record Batch(List<Entry> entries, boolean gap) {
+    }
+
+    @PostConstruct
+    public void init() {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        waker = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (waker != null) waker.shutdownNow();
+    }
+
+    /**
+     * Подписка после старта приложения: данные, восстановленные при запуске, в ленту не попадают.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        filmStorage.addListener(this);
+        userStorage.addListener(this);
+    }
+
+    @Override
+    public void onEvent(StorageEvent event) {
+        long offset = sequence.incrementAndGet();
+        slots.set((int) (offset & mask), new Entry(offset, event));
+        // Пачка событий будит ждущих один раз; событие приходит под блокировкой хранилища, поэтому здесь
+        // только постановка задачи.
+        if (!waiters.isEmpty() && wakeScheduled.compareAndSet(false, true)) {
+            try {
+                waker.execute(this::wakeWaiters);
+            } catch (RejectedExecutionException e) {
+                // Приложение останавливается: будить некого.
+                wakeScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Номер последнего события; новый подписчик с этим номером получит только будущие изменения.
+     */
+    public long head() {
+        return sequence.get();
+    }
+
+    /**
+     * До {@code limit} событий с номерами больше {@code after}, по порядку и без пропусков внутри пачки.
+     * Номер больше последнего — от прежнего запуска (номера после перезапуска начинаются с 1): это тоже
+     * пропуск, и чтение идёт с самого старого сохранённого события.
+     */
+    public Batch read(long after, int limit) {
+        long head = sequence.get();
+        long oldest = Math.max(1, head - slots.length() + 1);
+        boolean gap = after + 1 < oldest || after > head;
+        List<Entry> entries = new ArrayList<>();
+        for (long offset = gap ? oldest : after + 1; offset <= head && entries.size() < limit; offset++) {
+            Entry entry = slots.get((int) (offset & mask));
+            if (entry == null || entry.offset() != offset) {
+                // Номер выдан, но событие ещё не записано, или писатели уже обогнали читателя на круг;
+                // следующее чтение продолжит отсюда или сообщит о пропуске.
+                break;
+            }
+            entries.add(entry);
+        }
+        return new Batch(entries, gap);
+    }
+
+    /**
+     * Ждёт событие с номером больше {@code after}, но не дольше {@code timeoutMillis}.
+     */
+    public void await(long after, long timeoutMillis) throws InterruptedException {
+        Thread current = Thread.currentThread();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        // Сначала регистрация, потом проверка номера: писатель, увеличивший номер до проверки,
+        // увидит ждущего и разбудит его.
+        waiters.add(current);
+        try {
+            while (sequence.get() <= after) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return;
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            waiters.remove(current);
+        }
+    }
+
+    private void wakeWaiters() {
+        wakeScheduled.set(false);
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+}
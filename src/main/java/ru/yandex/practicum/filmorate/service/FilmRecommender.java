@@ -0,0 +1,250 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.util.LongCounter;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Рекомендации «фильм к фильму» по совместным лайкам: строка разреженной матрицы для фильма {@code f}
+ * хранит, сколько пользователей лайкнули и {@code f}, и другой фильм. Матрица строится один раз
+ * параллельно (fork-join) при первом запросе, дальше поддерживается по событиям лайков.
+ * <p>
+ * На события рекомендатель подписывается только при первом построении. Слушатель лишь кладёт событие
+ * в очередь: запись лайка не ждёт ни пересчёта строк, ни перестроения матрицы. Очередь разбирается
+ * в фоновом потоке и перед каждым ответом. Каждое событие задаёт итоговое состояние пары фильм-пользователь,
+ * поэтому повтор уже учтённого в матрице события ничего не меняет.
+ * <p>
+ * Каждая строка ограничена {@code top-k} фильмами: когда в ней вдвое больше записей, она урезается
+ * до наибольших. Счётчики вытесненных пар теряются, поэтому значения в строках приближённые снизу.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmRecommender implements StorageListener {
+    private final FilmStorage filmStorage;
+    // Своя копия лайков только в одну сторону, пользователь → фильмы: события обрабатываются по очереди,
+    // а множества лайков в хранилище к моменту обработки уже могут содержать более поздние изменения.
+    // Прямой индекс фильм → пользователи не хранится: при построении он берётся из снимков хранилища,
+    // а при редкой замене лайков фильма целиком выводится из обратного.
+    private final Map<Long, LongSet> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Long, LongCounter> rows = new ConcurrentHashMap<>();
+    private final Queue<StorageEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    // Матрица, обратный индекс и built меняются и читаются под этой блокировкой.
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean built;
+    private ExecutorService drainer;
+
+    @Value("${recommendations.films.top-k:50}")
+    private int topK;
+
+    @Value("${recommendations.max-fan-out:500}")
+    private int maxFanOut;
+
+    @PostConstruct
+    public void start() {
+        drainer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "film-recommender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (drainer != null) drainer.shutdownNow();
+    }
+
+    /**
+     * Id фильмов, чаще всего лайкнутых вместе с данным, не больше {@code count}.
+     */
+    public long[] similar(long filmId, int count) {
+        lock.lock();
+        try {
+            if (!built) rebuild();
+            drain();
+            LongCounter row = rows.get(filmId);
+            return row != null ? row.top(Math.min(count, topK), id -> id == filmId) : new long[0];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Id фильмов для пользователя: сумма строк матрицы по его лайкам (не больше {@code maxFanOut} из них)
+     * без уже лайкнутых фильмов.
+     */
+    public long[] recommend(long userId, int count) {
+        lock.lock();
+        try {
+            if (!built) rebuild();
+            drain();
+            LongSet liked = filmsByUser.getOrDefault(userId, new LongSet());
+            LongCounter scores = new LongCounter(Math.min(liked.size(), maxFanOut) * topK);
+            long[] sample = liked.toLongArray();
+            int step = Math.max(1, sample.length / maxFanOut);
+            for (int i = 0; i < sample.length; i += step) {
+                LongCounter row = rows.get(sample[i]);
+                if (row != null) row.forEach(scores::add);
+            }
+            return scores.top(count, liked::contains);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Строит матрицу заново по текущим лайкам: сначала обратный индекс пользователь → фильмы,
+     * затем строки всех фильмов независимо друг от друга в общем пуле fork-join. Подписка оформляется
+     * до чтения хранилища, так что изменения во время построения остаются в очереди и применяются после.
+     */
+    public void rebuild() {
+        lock.lock();
+        try {
+            if (subscribed.compareAndSet(false, true)) {
+                filmStorage.addListener(this);
+            }
+            long started = System.nanoTime();
+            filmsByUser.clear();
+            rows.clear();
+            List<Film> films = new ArrayList<>(filmStorage.findAll());
+            // Снимки лайков живут только на время построения.
+            LongSet[] likers = new LongSet[films.size()];
+            IntStream.range(0, films.size()).parallel().forEach(i -> {
+                long filmId = films.get(i).getId();
+                likers[i] = films.get(i).getLikes().snapshot();
+                // Множество меняют по очереди: compute держит ключ, пока в него добавляется фильм.
+                likers[i].forEachLong(userId -> filmsByUser.compute(userId, (id, liked) -> {
+                    LongSet set = liked != null ? liked : new LongSet();
+                    set.add(filmId);
+                    return set;
+                }));
+            });
+            IntStream.range(0, films.size()).parallel().forEach(i -> {
+                long filmId = films.get(i).getId();
+                LongCounter row = new LongCounter();
+                likers[i].forEachLong(userId -> filmsByUser.get(userId).forEachLong(other -> {
+                    if (other != filmId) row.add(other, 1);
+                }));
+                rows.put(filmId, row.size() > topK ? row.retainTop(topK) : row);
+            });
+            built = true;
+            log.info("Матрица совместных лайков: {} фильмов, {} пользователей за {} мс", films.size(),
+                    filmsByUser.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onEvent(StorageEvent event) {
+        // Событие приходит под блокировкой фильма, поэтому здесь только очередь; события пользователей не нужны.
+        if (!(event instanceof StorageEvent.LikeAdded || event instanceof StorageEvent.LikeRemoved
+                || event instanceof StorageEvent.FilmSaved || event instanceof StorageEvent.FilmDeleted)) {
+            return;
+        }
+        pending.add(event);
+        if (drainScheduled.compareAndSet(false, true)) {
+            drainer.execute(this::drainInBackground);
+        }
+    }
+
+    private void drainInBackground() {
+        drainScheduled.set(false);
+        lock.lock();
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось применить события к матрице совместных лайков", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Применяет накопленные события к матрице; вызывается под {@link #lock}.
+     */
+    private void drain() {
+        StorageEvent event;
+        while ((event = pending.poll()) != null) {
+            switch (event) {
+                case StorageEvent.LikeAdded e -> like(e.filmId(), e.userId());
+                case StorageEvent.LikeRemoved e -> unlike(e.filmId(), e.userId());
+                case StorageEvent.FilmSaved e -> replaceLikes(e.film().getId(), e.film().getLikes().snapshot());
+                case StorageEvent.FilmDeleted e -> {
+                    replaceLikes(e.filmId(), new LongSet());
+                    rows.remove(e.filmId());
+                }
+                default -> {
+                    // Прочие события в очередь не попадают.
+                }
+            }
+        }
+    }
+
+    /**
+     * Лайкнувшие фильм по версии матрицы ищутся проходом по обратному индексу: сохранение и удаление фильма
+     * редки по сравнению с лайками, и отдельная копия прямого индекса ради них не окупается.
+     */
+    private void replaceLikes(long filmId, LongSet updated) {
+        List<Long> removed = new ArrayList<>();
+        filmsByUser.forEach((userId, liked) -> {
+            if (liked.contains(filmId) && !updated.contains(userId)) removed.add(userId);
+        });
+        removed.forEach(userId -> unlike(filmId, userId));
+        updated.forEachLong(userId -> like(filmId, userId));
+    }
+
+    private void like(long filmId, long userId) {
+        LongSet liked = filmsByUser.computeIfAbsent(userId, id -> new LongSet());
+        if (!liked.add(filmId)) return;
+        adjust(filmId, liked, 1);
+    }
+
+    private void unlike(long filmId, long userId) {
+        LongSet liked = filmsByUser.get(userId);
+        if (liked == null || !liked.remove(filmId)) return;
+        adjust(filmId, liked, -1);
+    }
+
+    private void adjust(long filmId, LongSet liked, int delta) {
+        liked.forEachLong(other -> {
+            if (other != filmId) {
+                increment(filmId, other, delta);
+                increment(other, filmId, delta);
+            }
+        });
+    }
+
+    private void increment(long filmId, long other, int delta) {
+        LongCounter row = rows.computeIfAbsent(filmId, id -> new LongCounter());
+        row.add(other, delta);
+        if (row.size() > 2 * topK) {
+            rows.put(filmId, row.retainTop(topK));
+        }
+    }
+}
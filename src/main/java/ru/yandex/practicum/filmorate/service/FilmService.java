@@ -5,12 +5,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperationResult;
+import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.util.LongSet;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
-import java.util.stream.Collectors;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
@@ -18,31 +29,150 @@ public class FilmService {
 
     private final FilmStorage filmStorage;
     private final UserService userService;
+    private final FilmRecommender filmRecommender;
+    private final FilmTrends filmTrends;
 
     @Value("${popular.default-count:10}")
     private int defaultCount;
 
+    @Value("${likes.batch.max-size:10000}")
+    private int maxBatchSize;
+
+    @Value("${pagination.default-limit:100}")
+    private int defaultPageLimit;
+
+    @Value("${recommendations.default-count:10}")
+    private int defaultRecommendations;
+
     public void addLike(Long filmId, Long userId) {
-        Film film = getById(filmId);
-        userService.getById(userId);
-        film.getLikes().add(userId);
-        filmStorage.update(film);
+        requireExisting(filmId);
+        userService.requireExisting(userId);
+        filmStorage.addLike(filmId, userId);
     }
 
     public void removeLike(Long filmId, Long userId) {
-        Film film = getById(filmId);
-        userService.getById(userId);
-        film.getLikes().remove(userId);
-        filmStorage.update(film);
+        requireExisting(filmId);
+        userService.requireExisting(userId);
+        filmStorage.removeLike(filmId, userId);
+    }
+
+    /**
+     * Применяет пакет лайков: пользователи проверяются одним запросом к хранилищу, операции группируются по фильму
+     * и применяются к каждому фильму за один захват блокировки. Для повторяющейся пары фильм-пользователь
+     * действует последняя операция.
+     */
+    public List<LikeOperationResult> applyLikes(List<LikeOperation> operations) {
+        if (operations.size() > maxBatchSize) {
+            throw new ValidationException("Пакет не может содержать больше " + maxBatchSize + " операций");
+        }
+        LikeOperationResult.Status[] statuses = new LikeOperationResult.Status[operations.size()];
+        Set<Long> existingUsers = new HashSet<>();
+        for (User user : userService.getByIds(operations.stream()
+                .filter(operation -> operation != null && operation.getUserId() != null)
+                .map(LikeOperation::getUserId)
+                .distinct()
+                .toList())) {
+            existingUsers.add(user.getId());
+        }
+        Map<Long, Map<Long, LikeOperation.Type>> byFilm = new LinkedHashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            LikeOperation operation = operations.get(i);
+            if (operation == null || operation.getFilmId() == null || operation.getUserId() == null
+                    || operation.getOp() == null) {
+                statuses[i] = LikeOperationResult.Status.INVALID;
+            } else if (!existingUsers.contains(operation.getUserId())) {
+                statuses[i] = LikeOperationResult.Status.USER_NOT_FOUND;
+            } else {
+                byFilm.computeIfAbsent(operation.getFilmId(), id -> new LinkedHashMap<>())
+                        .put(operation.getUserId(), operation.getOp());
+            }
+        }
+
+        Set<Long> missingFilms = new HashSet<>();
+        byFilm.forEach((filmId, changes) -> {
+            long[] additions = new long[changes.size()];
+            long[] removals = new long[changes.size()];
+            int added = 0;
+            int removed = 0;
+            for (Map.Entry<Long, LikeOperation.Type> change : changes.entrySet()) {
+                if (change.getValue() == LikeOperation.Type.ADD) {
+                    additions[added++] = change.getKey();
+                } else {
+                    removals[removed++] = change.getKey();
+                }
+            }
+            try {
+                filmStorage.applyLikes(filmId, LongSet.of(Arrays.copyOf(additions, added)),
+                        LongSet.of(Arrays.copyOf(removals, removed)));
+            } catch (NotFoundException e) {
+                missingFilms.add(filmId);
+            }
+        });
+
+        List<LikeOperationResult> results = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            LikeOperation operation = operations.get(i);
+            LikeOperationResult.Status status = statuses[i];
+            if (status == null) {
+                status = missingFilms.contains(operation.getFilmId())
+                        ? LikeOperationResult.Status.FILM_NOT_FOUND
+                        : LikeOperationResult.Status.OK;
+            }
+            results.add(operation == null
+                    ? new LikeOperationResult(null, null, null, status)
+                    : new LikeOperationResult(operation.getFilmId(), operation.getUserId(), operation.getOp(), status));
+        }
+        return results;
+    }
+
+    public long getCatalogVersion() {
+        return filmStorage.getVersion();
     }
 
     public Collection<Film> getPopular(Integer count) {
+        return getPopular(count, null, null, null);
+    }
+
+    /**
+     * Популярные фильмы с фильтром по году выхода и/или диапазону дат (границы включительно);
+     * год и диапазон пересекаются.
+     */
+    public Collection<Film> getPopular(Integer count, Integer year, LocalDate from, LocalDate to) {
+        if (count == null || count <= 0) count = defaultCount;
+        if (year != null) {
+            LocalDate yearStart = LocalDate.of(year, 1, 1);
+            LocalDate yearEnd = LocalDate.of(year, 12, 31);
+            from = from == null || from.isBefore(yearStart) ? yearStart : from;
+            to = to == null || to.isAfter(yearEnd) ? yearEnd : to;
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            return List.of();
+        }
+        return from == null && to == null ? filmStorage.getPopular(count) : filmStorage.getPopular(count, from, to);
+    }
+
+    /**
+     * Фильмы с наибольшим числом лайков за окно {@code 1h}, {@code 24h} или {@code 7d}.
+     */
+    public List<Film> getTrending(String window, Integer count) {
         if (count == null || count <= 0) count = defaultCount;
-        return filmStorage.findAll().stream()
-                .sorted(
-                        Comparator.comparingInt(f -> -f.getLikes().size()))
-                .limit(count)
-                .collect(Collectors.toList());
+        return filmStorage.getByIds(filmTrends.top(FilmTrends.Window.parse(window), count));
+    }
+
+    /**
+     * Фильмы, которые чаще всего лайкают вместе с данным.
+     */
+    public List<Film> getSimilar(Long filmId, Integer count) {
+        requireExisting(filmId);
+        return resolve(filmRecommender.similar(filmId, count != null ? count : defaultRecommendations));
+    }
+
+    /**
+     * Фильмы, похожие на лайкнутые пользователем, кроме уже лайкнутых.
+     */
+    public List<Film> getRecommendedFilms(Long userId, Integer count) {
+        userService.requireExisting(userId);
+        return resolve(filmRecommender.recommend(userId, count != null ? count : defaultRecommendations));
     }
 
     public Film create(Film film) {
@@ -59,7 +189,29 @@ public class FilmService {
         return film;
     }
 
+    /**
+     * Проверка существования без чтения фильма с лайками.
+     */
+    public void requireExisting(Long id) {
+        if (!filmStorage.exists(id)) throw new NotFoundException("Film with id " + id + " not found");
+    }
+
     public Collection<Film> findAll() {
         return filmStorage.findAll();
     }
+
+    /**
+     * Фильмы с заданными id одним обращением к хранилищу; несуществующие id пропускаются.
+     */
+    public List<Film> getByIds(Collection<Long> ids) {
+        return filmStorage.getByIds(ids);
+    }
+
+    public List<Film> findPage(Long after, Integer limit) {
+        return filmStorage.findPage(after != null ? after : 0, limit != null ? limit : defaultPageLimit);
+    }
+
+    private List<Film> resolve(long[] ids) {
+        return filmStorage.getByIds(Arrays.stream(ids).boxed().toList());
+    }
 }
@@ -0,0 +1,248 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.util.LongCounter;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Фильмы, набирающие лайки: сколько лайков поставлено за последний час, сутки или неделю.
+ * <p>
+ * Лайки раскладываются по кольцам корзин: минутные за сутки и часовые за неделю. Для каждого окна
+ * ведётся свой рейтинг {@link FilmPopularityIndex}: лайк прибавляется к окнам сразу, а когда корзина
+ * выходит за границу окна, её счётчики вычитаются. Память ограничена числом корзин и активных фильмов
+ * и не зависит от числа лайков. Снятие лайка тренд не уменьшает: время исходного лайка не хранится.
+ * <p>
+ * Лайк приходит под блокировкой фильма, поэтому на пути записи он только кладётся в очередь с моментом
+ * события; по корзинам очередь раскладывает фоновый поток, а запрос тренда перед чтением дочитывает её сам.
+ * <p>
+ * Счётчики живут только в памяти и начинаются с нуля после запуска — лайки, восстановленные
+ * из журнала, в тренд не попадают.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmTrends implements StorageListener {
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+
+    private final FilmStorage filmStorage;
+    private final Ring minutes = new Ring(MINUTE, 24 * 60);
+    private final Ring hours = new Ring(HOUR, 7 * 24);
+    // Рейтинги заменяются под lock при сбросе окна, а читаются без него.
+    private final AtomicReferenceArray<FilmPopularityIndex> rankings = rankings();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private ExecutorService drainer;
+    private Clock clock = Clock.systemUTC();
+
+    public enum Window {
+        HOUR("1h", 60),
+        DAY("24h", 24 * 60),
+        WEEK("7d", 7 * 24);
+
+        private final String label;
+        private final int buckets;
+
+        Window(String label, int buckets) {
+            this.label = label;
+            this.buckets = buckets;
+        }
+
+        public static Window parse(String label) {
+            for (Window window : values()) {
+                if (window.label.equals(label)) {
+                    return window;
+                }
+            }
+            throw new ValidationException("Окно должно быть одним из: 1h, 24h, 7d");
+        }
+    }
+
+    /**
+     * Подписка после старта приложения, чтобы воспроизведение журнала не считалось свежими лайками.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        drainer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "film-trends");
+            thread.setDaemon(true);
+            return thread;
+        });
+        filmStorage.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (drainer != null) drainer.shutdownNow();
+    }
+
+    public List<Long> top(Window window, int count) {
+        lock.lock();
+        try {
+            drain();
+            advance(clock.millis());
+        } finally {
+            lock.unlock();
+        }
+        return rankings.get(window.ordinal()).top(count);
+    }
+
+    @Override
+    public void onEvent(StorageEvent event) {
+        if (!(event instanceof StorageEvent.LikeAdded || event instanceof StorageEvent.FilmDeleted)) {
+            // Остальные события тренд не меняют.
+            return;
+        }
+        pending.add(new Pending(event, clock.millis()));
+        if (drainScheduled.compareAndSet(false, true)) {
+            drainer.execute(this::drainInBackground);
+        }
+    }
+
+    private void drainInBackground() {
+        drainScheduled.set(false);
+        lock.lock();
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось учесть лайки в трендах", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Раскладывает накопленные события по корзинам; вызывается под {@link #lock}. Лайк, пролежавший в очереди
+     * дольше корзины, попадает в текущую: кольцо назад не сдвигается.
+     */
+    private void drain() {
+        Pending next;
+        while ((next = pending.poll()) != null) {
+            switch (next.event()) {
+                case StorageEvent.LikeAdded e -> record(e.filmId(), next.at());
+                case StorageEvent.FilmDeleted e -> {
+                    for (int i = 0; i < rankings.length(); i++) {
+                        rankings.get(i).remove(e.filmId());
+                    }
+                }
+                default -> {
+                    // Прочие события в очередь не попадают.
+                }
+            }
+        }
+    }
+
+    private void record(long filmId, long at) {
+        advance(at);
+        minutes.current().add(filmId, 1);
+        hours.current().add(filmId, 1);
+        for (int i = 0; i < rankings.length(); i++) {
+            FilmPopularityIndex ranking = rankings.get(i);
+            ranking.put(filmId, Math.max(0, ranking.likes(filmId)) + 1);
+        }
+    }
+
+    private void advance(long now) {
+        minutes.advance(now, Window.HOUR, Window.DAY);
+        hours.advance(now, Window.WEEK);
+    }
+
+    private void expire(Window window, LongCounter bucket) {
+        FilmPopularityIndex ranking = rankings.get(window.ordinal());
+        bucket.forEach((filmId, likes) -> {
+            int total = ranking.likes(filmId);
+            if (total < 0) return;
+            if (total > likes) {
+                ranking.put(filmId, total - likes);
+            } else {
+                ranking.remove(filmId);
+            }
+        });
+    }
+
+    private static AtomicReferenceArray<FilmPopularityIndex> rankings() {
+        AtomicReferenceArray<FilmPopularityIndex> rankings = new AtomicReferenceArray<>(Window.values().length);
+        for (int i = 0; i < rankings.length(); i++) {
+            rankings.set(i, new FilmPopularityIndex());
+        }
+        return rankings;
+    }
+
+    private record Pending(StorageEvent event, long at) {
+    }
+
+    /**
+     * Кольцо корзин одной длительности; корзина с номером {@code n} покрывает {@code [n * width, (n + 1) * width)}.
+     */
+    private final class Ring {
+        private final long width;
+        private final LongCounter[] buckets;
+        private long current = -1;
+
+        Ring(long width, int size) {
+            this.width = width;
+            this.buckets = new LongCounter[size];
+        }
+
+        LongCounter current() {
+            return buckets[(int) (current % buckets.length)];
+        }
+
+        /**
+         * Сдвигает кольцо к текущему времени: корзины, вышедшие за границу окна, вычитаются из его рейтинга,
+         * освободившиеся ячейки переиспользуются для новых корзин.
+         */
+        void advance(long now, Window... windows) {
+            long target = now / width;
+            if (current < 0 || target - current > buckets.length) {
+                // Первый вызов или простой дольше кольца: в окнах не осталось ни одной корзины.
+                for (Window window : windows) {
+                    rankings.set(window.ordinal(), new FilmPopularityIndex());
+                }
+                for (int i = 0; i < buckets.length; i++) {
+                    buckets[i] = null;
+                }
+                current = target;
+                buckets[(int) (current % buckets.length)] = new LongCounter();
+                return;
+            }
+            while (current < target) {
+                current++;
+                for (Window window : windows) {
+                    LongCounter expired = bucket(current - window.buckets);
+                    if (expired != null) expire(window, expired);
+                }
+                buckets[(int) (current % buckets.length)] = new LongCounter();
+            }
+        }
+
+        /**
+         * Корзина с номером {@code number}; {@code null}, если её не было (в том числе до первого сдвига).
+         * В ячейке не может оказаться другая корзина: после сброса ячейки заполняются по порядку.
+         */
+        private LongCounter bucket(long number) {
+            return number >= 0 ? buckets[(int) (number % buckets.length)] : null;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.LongCounter;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * «Возможно, вы знакомы»: друзья друзей, упорядоченные по числу общих друзей.
+ * <p>
+ * Без кэша обход ограничен: берётся не больше {@code maxFanOut} друзей пользователя и не больше
+ * {@code maxFanOut} друзей каждого из них, обе выборки равномерные по возрастанию id, поэтому у очень общительных пользователей
+ * число общих друзей приближённое. С кэшем ({@code recommendations.cache.enabled}) счётчики общих друзей
+ * поддерживаются точно: событие дружбы {@code u → f} меняет счётчики {@code u} по друзьям {@code f}
+ * и счётчики всех, кто дружит с {@code u}, по {@code f}. Память кэша растёт как сумма квадратов степеней,
+ * поэтому по умолчанию он выключен.
+ * <p>
+ * Как и у {@link FilmRecommender}, граф читается при первом запросе, а слушатель только кладёт событие в очередь:
+ * запись дружбы не ждёт ни пересчёта счётчиков, ни построения кэша. Очередь разбирается в фоновом потоке
+ * и перед каждым ответом; каждое событие задаёт итоговое состояние ребра, поэтому повтор учтённого ничего не меняет.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FriendRecommender implements StorageListener {
+    private final UserStorage userStorage;
+    // Кэш ведёт свою копию графа: события обрабатываются по очереди, а множества друзей в хранилище
+    // к моменту обработки уже могут содержать более поздние изменения.
+    private final Map<Long, LongSet> friends = new HashMap<>();
+    private final Map<Long, LongSet> followers = new HashMap<>();
+    private final Map<Long, LongCounter> mutual = new HashMap<>();
+    private final Map<Long, long[]> tops = new HashMap<>();
+    private final Queue<StorageEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    // Кэш и built меняются и читаются под этой блокировкой.
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean built;
+    private ExecutorService drainer;
+
+    @Value("${recommendations.max-fan-out:500}")
+    private int maxFanOut;
+
+    @Value("${recommendations.max-limit:100}")
+    private int maxLimit;
+
+    @Value("${recommendations.cache.enabled:false}")
+    private boolean cacheEnabled;
+
+    @PostConstruct
+    public void start() {
+        if (cacheEnabled) {
+            drainer = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "friend-recommender");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (drainer != null) drainer.shutdownNow();
+    }
+
+    /**
+     * Id рекомендованных пользователей, не больше {@code limit}; сам пользователь и его друзья исключены.
+     */
+    public long[] recommend(User user, int limit) {
+        int count = Math.min(limit, maxLimit);
+        LongSet direct = user.getFriends().snapshot();
+        long userId = user.getId();
+        if (!cacheEnabled) {
+            return traverse(userId, direct).top(count, id -> id == userId || direct.contains(id));
+        }
+        lock.lock();
+        try {
+            if (!built) build();
+            drain();
+            long[] top = tops.get(userId);
+            if (top == null) {
+                LongCounter counter = mutual.getOrDefault(userId, new LongCounter());
+                LongSet known = friends.getOrDefault(userId, new LongSet());
+                top = counter.top(maxLimit, id -> id == userId || known.contains(id));
+                tops.put(userId, top);
+            }
+            return top.length <= count ? top : Arrays.copyOf(top, count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onEvent(StorageEvent event) {
+        // Событие приходит под блокировками пользователей, поэтому здесь только очередь; события фильмов не нужны.
+        if (!(event instanceof StorageEvent.FriendAdded || event instanceof StorageEvent.FriendRemoved
+                || event instanceof StorageEvent.UserSaved || event instanceof StorageEvent.UserDeleted)) {
+            return;
+        }
+        pending.add(event);
+        if (drainScheduled.compareAndSet(false, true)) {
+            drainer.execute(this::drainInBackground);
+        }
+    }
+
+    private void drainInBackground() {
+        drainScheduled.set(false);
+        lock.lock();
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось применить события к кэшу рекомендаций друзей", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Применяет накопленные события к кэшу; вызывается под {@link #lock}.
+     */
+    private void drain() {
+        StorageEvent event;
+        while ((event = pending.poll()) != null) {
+            switch (event) {
+                case StorageEvent.FriendAdded e -> {
+                    link(e.userId(), e.friendId());
+                    link(e.friendId(), e.userId());
+                }
+                case StorageEvent.FriendRemoved e -> {
+                    unlink(e.userId(), e.friendId());
+                    unlink(e.friendId(), e.userId());
+                }
+                case StorageEvent.UserSaved e -> replaceFriends(e.user().getId(), e.user().getFriends().snapshot());
+                case StorageEvent.UserDeleted e -> removeUser(e.userId());
+                default -> {
+                    // Прочие события в очередь не попадают.
+                }
+            }
+        }
+    }
+
+    private LongCounter traverse(long userId, LongSet direct) {
+        long[] sample = sample(direct.toLongArray(), maxFanOut);
+        LongCounter counter = new LongCounter(sample.length * Math.min(maxFanOut, 64));
+        // Выборка отсортирована (как и множество друзей), поэтому читается одним запросом без упаковки в список.
+        for (User friend : userStorage.getByIds(LongSet.ofSorted(sample))) {
+            // Первые maxFanOut друзей смещали бы счётчики к младшим id, поэтому и здесь берётся выборка.
+            for (long candidate : sample(friend.getFriends().toLongArray(), maxFanOut)) {
+                counter.add(candidate, 1);
+            }
+        }
+        return counter;
+    }
+
+    private static long[] sample(long[] ids, int limit) {
+        if (ids.length <= limit) {
+            return ids;
+        }
+        long[] result = new long[limit];
+        for (int i = 0; i < limit; i++) {
+            result[i] = ids[(int) ((long) i * ids.length / limit)];
+        }
+        return result;
+    }
+
+    /**
+     * Читает граф из хранилища. Подписка оформляется до чтения, так что изменения во время построения
+     * остаются в очереди и применяются после; до первого запроса события не копятся вовсе.
+     */
+    private void build() {
+        if (subscribed.compareAndSet(false, true)) {
+            userStorage.addListener(this);
+        }
+        for (User user : userStorage.findAll()) {
+            replaceFriends(user.getId(), user.getFriends().snapshot());
+        }
+        built = true;
+    }
+
+    private void replaceFriends(long userId, LongSet updated) {
+        LongSet current = friends.get(userId);
+        if (current != null) {
+            for (long friendId : current.toLongArray()) {
+                if (!updated.contains(friendId)) unlink(userId, friendId);
+            }
+        }
+        updated.forEachLong(friendId -> link(userId, friendId));
+    }
+
+    private void removeUser(long userId) {
+        LongSet out = friends.get(userId);
+        if (out != null) {
+            for (long friendId : out.toLongArray()) {
+                unlink(userId, friendId);
+            }
+        }
+        LongSet in = followers.get(userId);
+        if (in != null) {
+            for (long followerId : in.toLongArray()) {
+                unlink(followerId, userId);
+            }
+        }
+        friends.remove(userId);
+        followers.remove(userId);
+        mutual.remove(userId);
+        tops.remove(userId);
+    }
+
+    private void link(long userId, long friendId) {
+        if (!friends.computeIfAbsent(userId, id -> new LongSet()).add(friendId)) return;
+        followers.computeIfAbsent(friendId, id -> new LongSet()).add(userId);
+        adjust(userId, friendId, 1);
+    }
+
+    private void unlink(long userId, long friendId) {
+        LongSet out = friends.get(userId);
+        if (out == null || !out.remove(friendId)) return;
+        followers.get(friendId).remove(userId);
+        adjust(userId, friendId, -1);
+    }
+
+    /**
+     * Ребро {@code u → f} делает {@code f} общим другом для {@code u} и каждого друга {@code f},
+     * а для всех, кто дружит с {@code u}, — добавляет кандидата {@code f}.
+     */
+    private void adjust(long userId, long friendId, int delta) {
+        LongSet friendFriends = friends.get(friendId);
+        if (friendFriends != null && !friendFriends.isEmpty()) {
+            LongCounter counter = mutual.computeIfAbsent(userId, id -> new LongCounter());
+            friendFriends.forEachLong(candidate -> counter.add(candidate, delta));
+            tops.remove(userId);
+        }
+        LongSet userFollowers = followers.get(userId);
+        if (userFollowers != null) {
+            userFollowers.forEachLong(followerId -> {
+                mutual.computeIfAbsent(followerId, id -> new LongCounter()).add(friendId, delta);
+                tops.remove(followerId);
+            });
+        }
+    }
+}
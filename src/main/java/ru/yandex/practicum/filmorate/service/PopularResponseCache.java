@@ -0,0 +1,192 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Готовые тела ответа {@code /films/popular} без фильтров: JSON и, для крупных ответов, его gzip-версия,
+ * по ключу {@code count}. Запись помечена версией каталога, с которой построена, и номером сборки для ETag;
+ * попадание не требует ни выборки, ни Jackson.
+ * <p>
+ * Изменение фильма или лайка ставит в очередь фоновую пересборку всех закэшированных ключей; события одной
+ * пачки изменений схлопываются в одну пересборку. Пока она не прошла, запрос получает последнее собранное
+ * тело, если оно построено не раньше {@code popular.cache.max-stale-ms} назад; старше — строится на месте.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class PopularResponseCache implements StorageListener, MeterBinder {
+    private static final int GZIP_MIN_BYTES = 1024;
+
+    private final FilmStorage filmStorage;
+    private final ObjectMapper objectMapper;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final AtomicLong builds = new AtomicLong();
+    private ScheduledExecutorService refresher;
+    private long maxStaleNanos;
+
+    @Value("${popular.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${popular.cache.max-count:100}")
+    private int maxCount;
+
+    @Value("${popular.cache.gzip:true}")
+    private boolean gzip;
+
+    @Value("${popular.cache.refresh-delay-ms:20}")
+    private long refreshDelayMillis;
+
+    @Value("${popular.cache.max-stale-ms:100}")
+    private long maxStaleMillis;
+
+    /**
+     * Тело ответа; {@code gzipped} — уже сжато и отдаётся с {@code Content-Encoding: gzip}, {@code build} —
+     * номер сборки: у разных тел он разный, у одного и того же тела — один.
+     */
+    public record Body(byte[] bytes, boolean gzipped, long build) {
+    }
+
+    private record Entry(long version, long build, long builtAt, byte[] json, byte[] gzipped) {
+    }
+
+    @PostConstruct
+    public void start() {
+        maxStaleNanos = TimeUnit.MILLISECONDS.toNanos(maxStaleMillis);
+        if (!enabled) return;
+        refresher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "popular-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        filmStorage.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) refresher.shutdownNow();
+    }
+
+    public boolean supports(int count) {
+        return enabled && count >= 1 && count <= maxCount;
+    }
+
+    /**
+     * Тело для {@code count}: построенное с текущей версии каталога или, пока идёт фоновая пересборка,
+     * собранное не раньше {@code popular.cache.max-stale-ms} назад.
+     */
+    public Body get(int count, boolean acceptGzip) {
+        long version = filmStorage.getVersion();
+        Entry entry = entries.get(count);
+        if (entry != null && entry.version() >= version) {
+            hits.increment();
+        } else if (entry != null && System.nanoTime() - entry.builtAt() <= maxStaleNanos) {
+            hits.increment();
+            scheduleRefresh();
+        } else {
+            misses.increment();
+            entry = store(count, build(count, version));
+        }
+        return acceptGzip && entry.gzipped() != null
+                ? new Body(entry.gzipped(), true, entry.build())
+                : new Body(entry.json(), false, entry.build());
+    }
+
+    @Override
+    public void onEvent(StorageEvent event) {
+        // Пересборка откладывается, чтобы события одной пачки изменений собрать в одну.
+        scheduleRefresh();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.popular.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Запросов популярных, отданных из кэша готовых ответов")
+                .register(registry);
+        FunctionCounter.builder("filmorate.popular.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Запросов популярных, для которых ответ пришлось построить")
+                .register(registry);
+        Gauge.builder("filmorate.popular.cache.hit.ratio", this, PopularResponseCache::hitRatio)
+                .description("Доля попаданий в кэш готовых ответов популярных с момента запуска")
+                .register(registry);
+    }
+
+    public double hitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    private void scheduleRefresh() {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            refresher.schedule(this::refresh, refreshDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refresh() {
+        refreshScheduled.set(false);
+        try {
+            long version = filmStorage.getVersion();
+            for (Map.Entry<Integer, Entry> cached : entries.entrySet()) {
+                if (cached.getValue().version() < version) {
+                    store(cached.getKey(), build(cached.getKey(), version));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Не удалось пересобрать кэш популярных", e);
+        }
+    }
+
+    private Entry store(int count, Entry entry) {
+        return entries.merge(count, entry, (old, built) -> old.version() >= built.version() ? old : built);
+    }
+
+    private Entry build(int count, long version) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(filmStorage.getPopular(count));
+            return new Entry(version, builds.incrementAndGet(), System.nanoTime(), json,
+                    gzip && json.length >= GZIP_MIN_BYTES ? compress(json) : null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] compress(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
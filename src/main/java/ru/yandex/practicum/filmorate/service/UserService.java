@@ -2,50 +2,78 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class UserService {
 
     private final UserStorage userStorage;
+    private final FriendRecommender friendRecommender;
+
+    @Value("${pagination.default-limit:100}")
+    private int defaultPageLimit;
+
+    @Value("${recommendations.default-count:10}")
+    private int defaultRecommendations;
 
     public void addFriend(Long userId, Long friendId) {
-        User user = getById(userId);
-        User friend = getById(friendId);
-        user.getFriends().add(friendId);
-        friend.getFriends().add(userId);
+        requireExisting(userId);
+        requireExisting(friendId);
+        userStorage.addFriend(userId, friendId);
     }
 
     public void removeFriend(Long userId, Long friendId) {
-        User user = getById(userId);
-        User friend = getById(friendId);
-        user.getFriends().remove(friendId);
-        friend.getFriends().remove(userId);
+        requireExisting(userId);
+        requireExisting(friendId);
+        userStorage.removeFriend(userId, friendId);
     }
 
 
     public Collection<User> getFriends(Long userId) {
-        User user = getById(userId);
-        return user.getFriends().stream()
-                .map(this::getById)
-                .collect(Collectors.toList());
+        requireExisting(userId);
+        return userStorage.getFriends(userId);
+    }
+
+    /**
+     * Версия списка друзей: максимум версий пользователя и его друзей. Версии в хранилище растут монотонно,
+     * поэтому изменение состава друзей или данных любого из них даёт новое значение.
+     */
+    public long getFriendsVersion(Long userId) {
+        long version = getById(userId).getVersion();
+        for (User friend : userStorage.getFriends(userId)) {
+            version = Math.max(version, friend.getVersion());
+        }
+        return version;
     }
 
     public Collection<User> getCommonFriends(Long userId, Long otherId) {
+        requireExisting(userId);
+        requireExisting(otherId);
+        return userStorage.getCommonFriends(userId, otherId);
+    }
+
+    public int getCommonFriendsCount(Long userId, Long otherId) {
         User user1 = getById(userId);
         User user2 = getById(otherId);
-        Set<Long> common = new HashSet<>(user1.getFriends());
-        common.retainAll(user2.getFriends());
-        return common.stream().map(this::getById).collect(Collectors.toList());
+        return user1.getFriends().intersectionSize(user2.getFriends());
+    }
+
+    /**
+     * Друзья друзей, которых пользователь ещё не добавил, по убыванию числа общих друзей.
+     */
+    public List<User> getRecommendations(Long userId, Integer count) {
+        User user = getById(userId);
+        long[] ids = friendRecommender.recommend(user, count != null ? count : defaultRecommendations);
+        return userStorage.getByIds(Arrays.stream(ids).boxed().toList());
     }
 
     public User create(User user) {
@@ -62,7 +90,25 @@ public class UserService {
         return user;
     }
 
+    /**
+     * Проверка существования без чтения пользователя со списком друзей.
+     */
+    public void requireExisting(Long id) {
+        if (!userStorage.exists(id)) throw new NotFoundException("User with id " + id + " not found");
+    }
+
     public Collection<User> findAll() {
         return userStorage.findAll();
     }
+
+    /**
+     * Пользователи с заданными id одним обращением к хранилищу; несуществующие id пропускаются.
+     */
+    public List<User> getByIds(Collection<Long> ids) {
+        return userStorage.getByIds(ids);
+    }
+
+    public List<User> findPage(Long after, Integer limit) {
+        return userStorage.findPage(after != null ? after : 0, limit != null ? limit : defaultPageLimit);
+    }
 }
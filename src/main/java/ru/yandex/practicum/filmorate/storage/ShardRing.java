@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+/**
+ * Кольцо согласованного хеширования: id сущности отображается на номер шарда.
+ * Каждый шард занимает на кольце {@code virtualNodes} точек, поэтому ключи распределяются равномерно,
+ * а при добавлении шарда переезжает лишь около {@code 1/(N+1)} ключей.
+ * Кольцо неизменяемо и хранится в двух массивах: поиск — двоичный, без упаковки ключей.
+ */
+public class ShardRing {
+    private final long[] points;
+    private final int[] owners;
+    private final int shards;
+
+    public ShardRing(int shards, int virtualNodes) {
+        if (shards < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("Число шардов и виртуальных узлов должно быть положительным");
+        }
+        this.shards = shards;
+        int size = shards * virtualNodes;
+        long[][] ring = new long[size][];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring[shard * virtualNodes + node] = new long[]{mix(((long) shard << 32) | node), shard};
+            }
+        }
+        Arrays.sort(ring, (a, b) -> Long.compare(a[0], b[0]));
+        points = new long[size];
+        owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = ring[i][0];
+            owners[i] = (int) ring[i][1];
+        }
+    }
+
+    public int shards() {
+        return shards;
+    }
+
+    /**
+     * Шард, которому принадлежит id: первая точка кольца не меньше хеша id (по кругу).
+     */
+    public int shardOf(long id) {
+        int index = Arrays.binarySearch(points, mix(id ^ 0x5DEECE66DL));
+        if (index < 0) index = -index - 1;
+        return owners[index == points.length ? 0 : index];
+    }
+
+    // Финализатор SplitMix64: соседние id попадают в несвязанные точки кольца.
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
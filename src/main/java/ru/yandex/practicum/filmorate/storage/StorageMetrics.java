@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+/**
+ * Размеры хранилищ. Все значения поддерживаются хранилищами на лету, поэтому опрос не обходит данные.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class StorageMetrics implements MeterBinder {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.films", filmStorage, FilmStorage::count)
+                .description("Фильмов в каталоге")
+                .register(registry);
+        Gauge.builder("filmorate.likes", filmStorage, FilmStorage::countLikes)
+                .description("Лайков по всем фильмам")
+                .register(registry);
+        Gauge.builder("filmorate.users", userStorage, UserStorage::count)
+                .description("Пользователей")
+                .register(registry);
+        Gauge.builder("filmorate.friend.links", userStorage, UserStorage::countFriendLinks)
+                .description("Записей в списках друзей, каждая дружба учитывается дважды")
+                .register(registry);
+    }
+}
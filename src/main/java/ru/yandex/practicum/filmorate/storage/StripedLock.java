@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Набор блокировок, разбитый на полосы по id сущности.
+ * Изменения разных сущностей почти никогда не конкурируют за одну блокировку.
+ */
+public class StripedLock {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public StripedLock(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    public void lock(long id) {
+        locks[index(id)].lock();
+    }
+
+    public void unlock(long id) {
+        locks[index(id)].unlock();
+    }
+
+    /**
+     * Захватывает блокировки двух сущностей всегда в одном порядке, чтобы исключить взаимную блокировку.
+     */
+    public void lockBoth(long first, long second) {
+        int a = index(first);
+        int b = index(second);
+        locks[Math.min(a, b)].lock();
+        if (a != b) {
+            locks[Math.max(a, b)].lock();
+        }
+    }
+
+    public void unlockBoth(long first, long second) {
+        int a = index(first);
+        int b = index(second);
+        if (a != b) {
+            locks[Math.max(a, b)].unlock();
+        }
+        locks[Math.min(a, b)].unlock();
+    }
+
+    private int index(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
@@ -0,0 +1,233 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Карта сущностей по id с многоверсионным чтением (MVCC).
+ * <p>
+ * Запись не меняет опубликованные объекты, а добавляет новую версию в голову цепочки ключа и помечает её
+ * номером фиксации из {@link #begin()}. Снимок ({@link #read}) видит для каждого ключа последнюю версию
+ * с номером не больше своего — то есть состояние на момент, когда все фиксации до этого номера завершены,
+ * включая изменения нескольких ключей с одним номером. Читатели не берут блокировок сущностей и не мешают
+ * писателям. Старые версии отсекаются при записи, как только их не может увидеть ни один открытый снимок;
+ * удалённые ключи убираются так же.
+ * <p>
+ * Писатель обязан вызывать {@code begin}/{@code commit} парой и под блокировкой изменяемых ключей,
+ * чтобы номера версий одного ключа росли. Несколько карт могут делить один счётчик номеров (шарды одного
+ * хранилища): номера тогда растут сквозь все карты, а снимок каждой карты учитывает только свои фиксации.
+ * <p>
+ * Учёт номеров и снимков не берёт блокировок: незавершённые фиксации и открытые снимки лежат в
+ * конкурентных отсортированных картах, так что писатели разных ключей и читатели не делят один монитор.
+ */
+public class VersionedMap<T> {
+    private final ConcurrentNavigableMap<Long, Version<T>> heads = new ConcurrentSkipListMap<>();
+    private final ConcurrentLinkedQueue<Version<T>> tombstones = new ConcurrentLinkedQueue<>();
+    // Незавершённые фиксации и открытые снимки с числом владельцев номера: номер может встретиться дважды.
+    private final ConcurrentNavigableMap<Long, Integer> pending = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Long, Integer> readers = new ConcurrentSkipListMap<>();
+    private final AtomicLong clock;
+    // Наибольший выданный стабильный номер: оценка по картам бывает ниже, но наружу номер не убывает.
+    private final AtomicLong stable = new AtomicLong();
+    // Снимки с номером ниже горизонта не открыты и уже не откроются; версии не новее горизонта можно отсекать.
+    private volatile long horizon;
+
+    public VersionedMap() {
+        this(new AtomicLong());
+    }
+
+    public VersionedMap(AtomicLong clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Выдаёт номер новой фиксации; до {@link #commit} снимки не включают версии с этим номером.
+     */
+    public long begin() {
+        // Сначала нижняя граница будущего номера, потом сам номер: читатель, увидевший счётчик с этим номером,
+        // уже видит и границу в pending и не сочтёт фиксацию завершённой.
+        long guard = clock.get() + 1;
+        acquire(pending, guard);
+        long stamp = clock.incrementAndGet();
+        if (stamp != guard) {
+            acquire(pending, stamp);
+            release(pending, guard);
+        }
+        return stamp;
+    }
+
+    public void commit(long stamp) {
+        release(pending, stamp);
+        advanceHorizon();
+        sweep();
+    }
+
+    /**
+     * Номер, до которого включительно все фиксации этой карты завершены; новый снимок видит их все.
+     */
+    public long stableStamp() {
+        return stable();
+    }
+
+    /**
+     * Публикует версию ключа; возвращает предыдущую актуальную версию или {@code null}.
+     */
+    public T put(long id, T value, long stamp) {
+        Version<T> previous = heads.get(id);
+        Version<T> head = new Version<>(id, value, stamp, previous);
+        heads.put(id, head);
+        prune(head);
+        return previous != null ? previous.value : null;
+    }
+
+    /**
+     * Удаляет ключ, оставляя пустую версию для открытых снимков; возвращает удалённое значение или {@code null}.
+     */
+    public T remove(long id, long stamp) {
+        Version<T> previous = heads.get(id);
+        if (previous == null || previous.value == null) {
+            return null;
+        }
+        Version<T> tombstone = new Version<>(id, null, stamp, previous);
+        heads.put(id, tombstone);
+        tombstones.add(tombstone);
+        prune(tombstone);
+        return previous.value;
+    }
+
+    /**
+     * Последняя опубликованная версия, в том числе ещё не зафиксированная: чтение одного ключа не ждёт фиксаций.
+     */
+    public T get(long id) {
+        Version<T> head = heads.get(id);
+        return head != null ? head.value : null;
+    }
+
+    /**
+     * Выполняет чтение на согласованном снимке; снимок закрывается по возврату из {@code reader}, поэтому
+     * результат не должен ссылаться на сам снимок.
+     */
+    public <R> R read(Function<Snapshot<T>, R> reader) {
+        // Снимок удерживает горизонт, прочитанный до своего номера: писатель, не заметивший этот снимок,
+        // посчитал горизонт до него и не выше номера снимка.
+        long pin = horizon;
+        acquire(readers, pin);
+        try {
+            return reader.apply(new Snapshot<>(heads, stable()));
+        } finally {
+            release(readers, pin);
+            advanceHorizon();
+        }
+    }
+
+    private long stable() {
+        long issued = clock.get();
+        Map.Entry<Long, Integer> oldest = pending.firstEntry();
+        long estimate = oldest == null ? issued : Math.min(issued, oldest.getKey() - 1);
+        return stable.accumulateAndGet(estimate, Math::max);
+    }
+
+    private void advanceHorizon() {
+        long stable = stable();
+        Map.Entry<Long, Integer> oldest = readers.firstEntry();
+        horizon = oldest == null ? stable : Math.min(oldest.getKey(), stable);
+    }
+
+    private static void acquire(ConcurrentNavigableMap<Long, Integer> counts, long stamp) {
+        counts.merge(stamp, 1, Integer::sum);
+    }
+
+    private static void release(ConcurrentNavigableMap<Long, Integer> counts, long stamp) {
+        counts.computeIfPresent(stamp, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void prune(Version<T> head) {
+        long limit = horizon;
+        for (Version<T> version = head; version != null; version = version.previous) {
+            if (version.stamp <= limit) {
+                version.previous = null;
+                return;
+            }
+        }
+    }
+
+    private void sweep() {
+        long limit = horizon;
+        Version<T> tombstone;
+        while ((tombstone = tombstones.peek()) != null && tombstone.stamp <= limit) {
+            tombstones.poll();
+            heads.remove(tombstone.id, tombstone);
+        }
+    }
+
+    /**
+     * Состояние карты на момент фиксации с номером {@link #stamp()}.
+     */
+    public static final class Snapshot<T> {
+        private final ConcurrentNavigableMap<Long, Version<T>> heads;
+        private final long stamp;
+
+        private Snapshot(ConcurrentNavigableMap<Long, Version<T>> heads, long stamp) {
+            this.heads = heads;
+            this.stamp = stamp;
+        }
+
+        public long stamp() {
+            return stamp;
+        }
+
+        public T get(long id) {
+            return resolve(heads.get(id));
+        }
+
+        /**
+         * Значения в порядке id: до {@code limit} штук с id больше {@code afterId}.
+         */
+        public List<T> values(long afterId, int limit) {
+            List<T> result = new ArrayList<>(Math.min(limit, 1024));
+            for (Map.Entry<Long, Version<T>> entry : heads.tailMap(afterId, false).entrySet()) {
+                if (result.size() >= limit) break;
+                T value = resolve(entry.getValue());
+                if (value != null) result.add(value);
+            }
+            return result;
+        }
+
+        public List<T> values(Collection<Long> ids) {
+            List<T> result = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                T value = id != null ? get(id) : null;
+                if (value != null) result.add(value);
+            }
+            return result;
+        }
+
+        private T resolve(Version<T> version) {
+            while (version != null && version.stamp > stamp) {
+                version = version.previous;
+            }
+            return version != null ? version.value : null;
+        }
+    }
+
+    private static final class Version<T> {
+        final long id;
+        final T value;
+        final long stamp;
+        volatile Version<T> previous;
+
+        Version(long id, T value, long stamp, Version<T> previous) {
+            this.id = id;
+            this.value = value;
+            this.stamp = stamp;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+/**
+ * Изменение, выполненное хранилищем. Публикуется под блокировкой сущности,
+ * поэтому события одной сущности приходят слушателям в порядке применения.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = StorageEvent.FilmSaved.class, name = "FILM_SAVED"),
+        @JsonSubTypes.Type(value = StorageEvent.FilmDeleted.class, name = "FILM_DELETED"),
+        @JsonSubTypes.Type(value = StorageEvent.LikeAdded.class, name = "LIKE_ADDED"),
+        @JsonSubTypes.Type(value = StorageEvent.LikeRemoved.class, name = "LIKE_REMOVED"),
+        @JsonSubTypes.Type(value = StorageEvent.UserSaved.class, name = "USER_SAVED"),
+        @JsonSubTypes.Type(value = StorageEvent.UserDeleted.class, name = "USER_DELETED"),
+        @JsonSubTypes.Type(value = StorageEvent.FriendAdded.class, name = "FRIEND_ADDED"),
+        @JsonSubTypes.Type(value = StorageEvent.FriendRemoved.class, name = "FRIEND_REMOVED")
+})
+public sealed interface StorageEvent {
+
+    record FilmSaved(Film film) implements StorageEvent {
+    }
+
+    record FilmDeleted(long filmId) implements StorageEvent {
+    }
+
+    record LikeAdded(long filmId, long userId) implements StorageEvent {
+    }
+
+    record LikeRemoved(long filmId, long userId) implements StorageEvent {
+    }
+
+    record UserSaved(User user) implements StorageEvent {
+    }
+
+    record UserDeleted(long userId) implements StorageEvent {
+    }
+
+    record FriendAdded(long userId, long friendId) implements StorageEvent {
+    }
+
+    record FriendRemoved(long userId, long friendId) implements StorageEvent {
+    }
+}
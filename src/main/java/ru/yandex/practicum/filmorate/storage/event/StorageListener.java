@@ -0,0 +1,6 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+@FunctionalInterface
+public interface StorageListener {
+    void onEvent(StorageEvent event);
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongPredicate;
+
+/**
+ * Рейтинг фильмов по числу лайков (по убыванию, при равенстве — по id).
+ * Обновляется точечно при изменении лайков, поэтому выборка top-K не требует сортировки всего каталога.
+ * Чтение не блокируется; изменения одного фильма вызывающий код должен выполнять последовательно.
+ */
+public class FilmPopularityIndex {
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>();
+
+    public void put(long filmId, int likes) {
+        Entry entry = new Entry(filmId, likes);
+        ranking.add(entry);
+        Entry previous = entries.put(filmId, entry);
+        if (previous != null && !previous.equals(entry)) {
+            ranking.remove(previous);
+        }
+    }
+
+    public void remove(long filmId) {
+        Entry previous = entries.remove(filmId);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+    }
+
+    public List<Long> top(int count) {
+        return top(count, filmId -> true);
+    }
+
+    /**
+     * Первые {@code count} фильмов рейтинга, прошедших {@code filter}.
+     */
+    public List<Long> top(int count, LongPredicate filter) {
+        List<Long> result = new ArrayList<>(Math.min(count, entries.size()));
+        // Во время перестановки фильм может кратко присутствовать в рейтинге дважды.
+        Set<Long> seen = new HashSet<>();
+        Iterator<Entry> iterator = ranking.iterator();
+        while (result.size() < count && iterator.hasNext()) {
+            long filmId = iterator.next().filmId();
+            if (seen.add(filmId) && filter.test(filmId)) {
+                result.add(filmId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Число лайков фильма на момент последнего обновления индекса, -1 если фильма нет.
+     */
+    public int likes(long filmId) {
+        Entry entry = entries.get(filmId);
+        return entry != null ? entry.likes() : -1;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private record Entry(long filmId, int likes) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byLikes = Integer.compare(other.likes, likes);
+            return byLikes != 0 ? byLikes : Long.compare(filmId, other.filmId);
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.util.LongSet;
 
+import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 
+/**
+ * Хранилище фильмов. Данные не проверяются: тело запроса проверяется один раз в контроллере,
+ * а внутренние изменения (лайки, восстановление) проверки не требуют.
+ */
 public interface FilmStorage {
     Film create(Film film);
 
@@ -13,5 +21,59 @@ public interface FilmStorage {
 
     Film getById(Long id);
 
+    /**
+     * Есть ли фильм; в отличие от {@link #getById}, не читает лайки.
+     */
+    boolean exists(Long id);
+
     Collection<Film> findAll();
+
+    /**
+     * Фильмы с заданными id в порядке запроса; отсутствующие id пропускаются.
+     */
+    List<Film> getByIds(Collection<Long> ids);
+
+    /**
+     * Страница в порядке возрастания id: до {@code limit} записей с id больше {@code afterId}.
+     */
+    List<Film> findPage(long afterId, int limit);
+
+    void addLike(Long filmId, Long userId);
+
+    void removeLike(Long filmId, Long userId);
+
+    void applyLikes(Long filmId, LongSet additions, LongSet removals);
+
+    Collection<Film> getPopular(int count);
+
+    /**
+     * Самые популярные фильмы с датой выхода в {@code [from, to]}; {@code null} — граница не задана.
+     */
+    Collection<Film> getPopular(int count, LocalDate from, LocalDate to);
+
+    long count();
+
+    /**
+     * Версия каталога: растёт при любом изменении фильмов и лайков, а значит и рейтинга популярных.
+     * Меняется, только когда изменение завершено, поэтому данные, прочитанные после неё, не старше неё.
+     */
+    long getVersion();
+
+    /**
+     * Общее число лайков по всем фильмам; поддерживается при изменениях, без обхода каталога.
+     */
+    long countLikes();
+
+    /**
+     * Сохраняет фильм с уже назначенным id без проверок и без уведомления слушателей (восстановление данных).
+     */
+    void restore(Film film);
+
+    /**
+     * Завершает восстановление после серии {@link #restore}: например, сдвигает счётчик id за восстановленные.
+     */
+    default void finishRestore() {
+    }
+
+    void addListener(StorageListener listener);
 }
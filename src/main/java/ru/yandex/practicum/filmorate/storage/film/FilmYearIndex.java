@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongFunction;
+
+/**
+ * Рейтинги популярности по годам выхода: отдельный {@link FilmPopularityIndex} на каждый год.
+ * Запрос с фильтром по датам читает только корзины попавших в диапазон лет; даты проверяются
+ * лишь в крайних годах, если границы не совпадают с началом или концом года.
+ * Фильмы без даты выхода в индекс не попадают. Требования к согласованности те же, что у рейтинга.
+ */
+public class FilmYearIndex {
+    private final NavigableMap<Integer, FilmPopularityIndex> years = new ConcurrentSkipListMap<>();
+
+    public void put(long filmId, int year, int likes) {
+        years.computeIfAbsent(year, y -> new FilmPopularityIndex()).put(filmId, likes);
+    }
+
+    public void remove(long filmId, int year) {
+        FilmPopularityIndex index = years.get(year);
+        if (index != null) {
+            // Пустые корзины остаются: лет немного, а удаление гонялось бы с параллельным put.
+            index.remove(filmId);
+        }
+    }
+
+    /**
+     * До {@code count} самых популярных фильмов с датой выхода в {@code [from, to]}; границы включительные,
+     * {@code null} — без ограничения. {@code releaseDate} возвращает дату выхода фильма по id или {@code null},
+     * если фильма уже нет.
+     */
+    public List<Long> top(int count, LocalDate from, LocalDate to, LongFunction<LocalDate> releaseDate) {
+        int fromYear = from != null ? from.getYear() : Integer.MIN_VALUE;
+        int toYear = to != null ? to.getYear() : Integer.MAX_VALUE;
+        if (fromYear > toYear) {
+            return List.of();
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        for (Map.Entry<Integer, FilmPopularityIndex> bucket : years.subMap(fromYear, true, toYear, true).entrySet()) {
+            int year = bucket.getKey();
+            FilmPopularityIndex index = bucket.getValue();
+            boolean clipFrom = from != null && year == fromYear && from.getDayOfYear() != 1;
+            boolean clipTo = to != null && year == toYear && to.getDayOfYear() != to.lengthOfYear();
+            List<Long> top = !clipFrom && !clipTo
+                    ? index.top(count)
+                    : index.top(count, filmId -> {
+                        LocalDate date = releaseDate.apply(filmId);
+                        return date != null && (!clipFrom || !date.isBefore(from)) && (!clipTo || !date.isAfter(to));
+                    });
+            for (long filmId : top) {
+                int likes = index.likes(filmId);
+                if (likes >= 0) candidates.add(new Candidate(filmId, likes));
+            }
+        }
+        return candidates.stream()
+                .sorted(Comparator.comparingInt(Candidate::likes).reversed().thenComparingLong(Candidate::filmId))
+                .limit(count)
+                .map(Candidate::filmId)
+                .toList();
+    }
+
+    private record Candidate(long filmId, int likes) {
+    }
+}
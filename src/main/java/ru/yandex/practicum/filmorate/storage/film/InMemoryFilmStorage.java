@@ -1,70 +1,328 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import org.springframework.validation.annotation.Validated;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
-import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Marker;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
+import ru.yandex.practicum.filmorate.storage.VersionedMap;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.util.LongSet;
 
 import java.time.LocalDate;
-import java.time.Month;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Фильмы в памяти. Опубликованный объект {@link Film} не меняется: каждое изменение, включая лайк,
+ * публикует новую версию в {@link VersionedMap}, а списки и страницы читаются с согласованного снимка.
+ */
 @Component
-@RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Validated
+@Profile("!jdbc & !sharded")
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Long, Film> films = new HashMap<>();
-    private long nextId = 1;
+    private final VersionedMap<Film> films;
+    // Размер карты не ведётся, поэтому считается отдельно.
+    private final LongAdder filmCount = new LongAdder();
+    private final FilmPopularityIndex popularityIndex = new FilmPopularityIndex();
+    private final FilmYearIndex yearIndex = new FilmYearIndex();
+    private final StripedLock locks = new StripedLock(64);
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final LongAdder likeCount = new LongAdder();
+    private final List<StorageListener> listeners = new CopyOnWriteArrayList<>();
+
+    public InMemoryFilmStorage() {
+        this(new AtomicLong());
+    }
+
+    /**
+     * Хранилище со счётчиком версий {@code clock}, общим с другими шардами.
+     */
+    InMemoryFilmStorage(AtomicLong clock) {
+        films = new VersionedMap<>(clock);
+    }
 
     @Override
-    @Validated(Marker.OnCreate.class)
+    @Timed("filmorate.storage")
     public Film create(Film film) {
-        validateFilm(film);
-        film.setId(nextId++);
-        films.put(film.getId(), film);
+        long id = nextId.getAndIncrement();
+        locks.lock(id);
+        try {
+            long stamp = films.begin();
+            try {
+                film.setId(id);
+                film.setVersion(stamp);
+                films.put(id, film, stamp);
+                filmCount.increment();
+                index(film, null);
+                likeCount.add(film.getLikes().size());
+            } finally {
+                films.commit(stamp);
+            }
+            publish(new StorageEvent.FilmSaved(film));
+        } finally {
+            locks.unlock(id);
+        }
         return film;
     }
 
     @Override
-    @Validated(Marker.OnUpdate.class)
+    @Timed("filmorate.storage")
     public Film update(Film film) {
-        if (!films.containsKey(film.getId())) {
-            throw new NotFoundException("Фильм с ID " + film.getId() + " не найден");
+        getExisting(film.getId());
+        locks.lock(film.getId());
+        try {
+            long stamp = films.begin();
+            try {
+                Film previous = getExisting(film.getId());
+                film.setVersion(stamp);
+                films.put(film.getId(), film, stamp);
+                index(film, previous);
+                likeCount.add(film.getLikes().size() - previous.getLikes().size());
+            } finally {
+                films.commit(stamp);
+            }
+            publish(new StorageEvent.FilmSaved(film));
+        } finally {
+            locks.unlock(film.getId());
         }
-        validateFilm(film);
-        films.put(film.getId(), film);
         return film;
     }
 
     @Override
-    @Validated
+    @Timed("filmorate.storage")
     public void delete(Long id) {
-        if (!films.containsKey(id)) {
-            throw new NotFoundException("Фильм с ID " + id + " не найден");
+        locks.lock(id);
+        try {
+            long stamp = films.begin();
+            try {
+                Film removed = films.remove(id, stamp);
+                if (removed == null) {
+                    throw new NotFoundException("Фильм с ID " + id + " не найден");
+                }
+                filmCount.decrement();
+                popularityIndex.remove(id);
+                if (removed.getReleaseDate() != null) yearIndex.remove(id, removed.getReleaseDate().getYear());
+                likeCount.add(-removed.getLikes().size());
+            } finally {
+                films.commit(stamp);
+            }
+            publish(new StorageEvent.FilmDeleted(id));
+        } finally {
+            locks.unlock(id);
         }
-        films.remove(id);
     }
 
     @Override
+    // Без таймера: вызывается в циклах по друзьям и лайкам, а время запроса уже покрыто http.server.requests.
     public Film getById(Long id) {
         return films.get(id);
     }
 
     @Override
+    public boolean exists(Long id) {
+        return id != null && films.get(id) != null;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
     public Collection<Film> findAll() {
-        return films.values();
+        return films.read(snapshot -> snapshot.values(Long.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public List<Film> getByIds(Collection<Long> ids) {
+        return films.read(snapshot -> snapshot.values(ids));
     }
 
-    private void validateFilm(Film film) {
-        LocalDate minReleaseDate = LocalDate.of(1895, Month.DECEMBER,28);
-        if (film.getReleaseDate() != null && film.getReleaseDate().isBefore(minReleaseDate)) {
-            throw new ValidationException("Дата релиза не может быть раньше 28 декабря 1895 года");
+    @Override
+    @Timed("filmorate.storage")
+    public List<Film> findPage(long afterId, int limit) {
+        return films.read(snapshot -> snapshot.values(afterId, limit));
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void addLike(Long filmId, Long userId) {
+        locks.lock(filmId);
+        try {
+            Film film = getExisting(filmId);
+            if (film.getLikes().contains(userId)) return;
+            long stamp = films.begin();
+            try {
+                Film next = copy(film, stamp);
+                next.getLikes().add(userId);
+                films.put(filmId, next, stamp);
+                index(next, film);
+                likeCount.increment();
+            } finally {
+                films.commit(stamp);
+            }
+            publish(new StorageEvent.LikeAdded(filmId, userId));
+        } finally {
+            locks.unlock(filmId);
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void removeLike(Long filmId, Long userId) {
+        locks.lock(filmId);
+        try {
+            Film film = getExisting(filmId);
+            if (!film.getLikes().contains(userId)) return;
+            long stamp = films.begin();
+            try {
+                Film next = copy(film, stamp);
+                next.getLikes().remove(userId);
+                films.put(filmId, next, stamp);
+                index(next, film);
+                likeCount.decrement();
+            } finally {
+                films.commit(stamp);
+            }
+            publish(new StorageEvent.LikeRemoved(filmId, userId));
+        } finally {
+            locks.unlock(filmId);
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void applyLikes(Long filmId, LongSet additions, LongSet removals) {
+        locks.lock(filmId);
+        try {
+            LongSet before;
+            long stamp = films.begin();
+            try {
+                Film film = getExisting(filmId);
+                before = film.getLikes();
+                Film next = copy(film, stamp);
+                next.getLikes().update(additions, removals);
+                films.put(filmId, next, stamp);
+                index(next, film);
+                likeCount.add(next.getLikes().size() - before.size());
+            } finally {
+                films.commit(stamp);
+            }
+            if (!listeners.isEmpty()) {
+                additions.forEachLong(userId -> {
+                    if (!before.contains(userId)) publish(new StorageEvent.LikeAdded(filmId, userId));
+                });
+                removals.forEachLong(userId -> {
+                    if (before.contains(userId)) publish(new StorageEvent.LikeRemoved(filmId, userId));
+                });
+            }
+        } finally {
+            locks.unlock(filmId);
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public Collection<Film> getPopular(int count) {
+        return getByIds(popularityIndex.top(count));
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public Collection<Film> getPopular(int count, LocalDate from, LocalDate to) {
+        if (from == null && to == null) {
+            return getPopular(count);
         }
+        return getByIds(yearIndex.top(count, from, to, id -> {
+            Film film = films.get(id);
+            return film != null ? film.getReleaseDate() : null;
+        }));
+    }
+
+    @Override
+    public long count() {
+        return filmCount.sum();
+    }
+
+    @Override
+    public long getVersion() {
+        return films.stableStamp();
+    }
+
+    @Override
+    public long countLikes() {
+        return likeCount.sum();
+    }
+
+    @Override
+    public void restore(Film film) {
+        long id = film.getId();
+        locks.lock(id);
+        long stamp = films.begin();
+        try {
+            film.setVersion(stamp);
+            Film previous = films.put(id, film, stamp);
+            if (previous == null) filmCount.increment();
+            index(film, previous);
+            likeCount.add(film.getLikes().size() - (previous != null ? previous.getLikes().size() : 0));
+            nextId.accumulateAndGet(id + 1, Math::max);
+        } finally {
+            films.commit(stamp);
+            locks.unlock(id);
+        }
+    }
+
+    @Override
+    public void addListener(StorageListener listener) {
+        listeners.add(listener);
+    }
+
+    private void publish(StorageEvent event) {
+        for (StorageListener listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+
+    /**
+     * Обновляет общий рейтинг и рейтинг по году выхода; {@code previous} — прежняя версия фильма,
+     * из корзины её года фильм убирается, если год изменился.
+     */
+    private void index(Film film, Film previous) {
+        long id = film.getId();
+        int likes = film.getLikes().size();
+        popularityIndex.put(id, likes);
+        LocalDate releaseDate = film.getReleaseDate();
+        LocalDate previousDate = previous != null ? previous.getReleaseDate() : null;
+        if (previousDate != null && (releaseDate == null || previousDate.getYear() != releaseDate.getYear())) {
+            yearIndex.remove(id, previousDate.getYear());
+        }
+        if (releaseDate != null) {
+            yearIndex.put(id, releaseDate.getYear(), likes);
+        }
+    }
+
+    /**
+     * Новая версия фильма с теми же полями; лайки копируются снимком за O(1).
+     */
+    private static Film copy(Film film, long stamp) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setLikes(film.getLikes());
+        copy.setVersion(stamp);
+        return copy;
+    }
+
+    private Film getExisting(Long id) {
+        Film film = id != null ? films.get(id) : null;
+        if (film == null) {
+            throw new NotFoundException("Фильм с ID " + id + " не найден");
+        }
+        return film;
     }
 }
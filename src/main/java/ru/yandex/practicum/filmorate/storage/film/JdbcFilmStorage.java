@@ -0,0 +1,415 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Хранилище фильмов в реляционной БД (профиль {@code jdbc}). Лайки — отдельная таблица {@code likes},
+ * рейтинг популярных считается одним агрегирующим запросом по её первичному ключу.
+ */
+@Component
+@Profile("jdbc")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class JdbcFilmStorage implements FilmStorage {
+    private static final String FILM_COLUMNS = "f.id, f.name, f.description, f.release_date, f.duration, f.version";
+    private static final RowMapper<Film> FILM_ROW = (rs, rowNum) -> {
+        Film film = new Film();
+        film.setId(rs.getLong("id"));
+        film.setName(rs.getString("name"));
+        film.setDescription(rs.getString("description"));
+        Date releaseDate = rs.getDate("release_date");
+        film.setReleaseDate(releaseDate != null ? releaseDate.toLocalDate() : null);
+        film.setDuration(rs.getObject("duration", Integer.class));
+        film.setVersion(rs.getLong("version"));
+        return film;
+    };
+
+    private final NamedParameterJdbcTemplate jdbc;
+    // Версии назначаются в процессе, как и в хранилище в памяти; после перезапуска счёт продолжается с максимума.
+    private final AtomicLong versions = new AtomicLong();
+    // Версия каталога — число зафиксированных изменений: растёт после фиксации транзакции, а не внутри неё.
+    private final AtomicLong completed = new AtomicLong();
+    private final List<StorageListener> listeners = new CopyOnWriteArrayList<>();
+
+    @Value("${filmorate.jdbc.batch-size:1000}")
+    private int batchSize;
+
+    @PostConstruct
+    public void start() {
+        Long max = jdbc.getJdbcTemplate().queryForObject("SELECT COALESCE(MAX(version), 0) FROM films", Long.class);
+        versions.accumulateAndGet(max != null ? max : 0, Math::max);
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional
+    public Film create(Film film) {
+        film.setVersion(nextVersion());
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbc.update("INSERT INTO films (name, description, release_date, duration, version) "
+                + "VALUES (:name, :description, :releaseDate, :duration, :version)", params(film), keys, new String[]{"id"});
+        film.setId(keys.getKeyAs(Long.class));
+        requireUsers(film.getLikes());
+        insertLikes(film.getId(), film.getLikes());
+        publish(new StorageEvent.FilmSaved(film));
+        return film;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional
+    public Film update(Film film) {
+        film.setVersion(nextVersion());
+        int updated = jdbc.update("UPDATE films SET name = :name, description = :description, "
+                + "release_date = :releaseDate, duration = :duration, version = :version WHERE id = :id", params(film));
+        if (updated == 0) {
+            throw new NotFoundException("Фильм с ID " + film.getId() + " не найден");
+        }
+        // Как и в памяти, обновление заменяет лайки переданными.
+        requireUsers(film.getLikes());
+        jdbc.update("DELETE FROM likes WHERE film_id = :id", Map.of("id", film.getId()));
+        insertLikes(film.getId(), film.getLikes());
+        publish(new StorageEvent.FilmSaved(film));
+        return film;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional
+    public void delete(Long id) {
+        if (jdbc.update("DELETE FROM films WHERE id = :id", Map.of("id", id)) == 0) {
+            throw new NotFoundException("Фильм с ID " + id + " не найден");
+        }
+        nextVersion();
+        publish(new StorageEvent.FilmDeleted(id));
+    }
+
+    @Override
+    public Film getById(Long id) {
+        List<Film> films = jdbc.query("SELECT " + FILM_COLUMNS + " FROM films f WHERE f.id = :id",
+                Map.of("id", id), FILM_ROW);
+        return films.isEmpty() ? null : withLikes(films).get(0);
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        return id != null && jdbc.queryForObject("SELECT COUNT(*) FROM films WHERE id = :id", Map.of("id", id),
+                Integer.class) > 0;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Collection<Film> findAll() {
+        List<Film> films = jdbc.query("SELECT " + FILM_COLUMNS + " FROM films f ORDER BY f.id", FILM_ROW);
+        Map<Long, List<Long>> likes = new HashMap<>();
+        jdbc.query("SELECT film_id, user_id FROM likes ORDER BY film_id, user_id", rs -> {
+            likes.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getLong(2));
+        });
+        films.forEach(film -> film.setLikes(LongSet.copyOf(likes.getOrDefault(film.getId(), List.of()))));
+        return films;
+    }
+
+    /**
+     * Один запрос {@code IN} на все id и один на их лайки; порядок восстанавливается в памяти.
+     */
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<Film> getByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, Film> found = new HashMap<>();
+        withLikes(jdbc.query("SELECT " + FILM_COLUMNS + " FROM films f WHERE f.id IN (:ids)",
+                Map.of("ids", ids), FILM_ROW)).forEach(film -> found.put(film.getId(), film));
+        List<Film> result = new ArrayList<>(found.size());
+        for (Long id : ids) {
+            Film film = found.get(id);
+            if (film != null) result.add(film);
+        }
+        return result;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<Film> findPage(long afterId, int limit) {
+        return withLikes(jdbc.query("SELECT " + FILM_COLUMNS + " FROM films f WHERE f.id > :after ORDER BY f.id "
+                + "LIMIT :limit", new MapSqlParameterSource("after", afterId).addValue("limit", limit), FILM_ROW));
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional
+    public void addLike(Long filmId, Long userId) {
+        requireExisting(filmId);
+        try {
+            jdbc.update("INSERT INTO likes (film_id, user_id) VALUES (:filmId, :userId)", likeParams(filmId, userId));
+        } catch (DuplicateKeyException e) {
+            // Лайк уже есть, в том числе поставленный параллельным запросом: повтор ничего не меняет.
+            return;
+        }
+        touch(filmId);
+        publish(new StorageEvent.LikeAdded(filmId, userId));
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional
+    public void removeLike(Long filmId, Long userId) {
+        requireExisting(filmId);
+        if (jdbc.update("DELETE FROM likes WHERE film_id = :filmId AND user_id = :userId",
+                likeParams(filmId, userId)) > 0) {
+            touch(filmId);
+            publish(new StorageEvent.LikeRemoved(filmId, userId));
+        }
+    }
+
+    /**
+     * Пакет пишется пакетными MERGE/DELETE по {@code filmorate.jdbc.batch-size} строк в одной транзакции;
+     * текущие лайки читаются один раз, чтобы знать, о чём уведомлять. MERGE не падает на лайке, который
+     * параллельный запрос вставил уже после чтения.
+     */
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional
+    public void applyLikes(Long filmId, LongSet additions, LongSet removals) {
+        requireExisting(filmId);
+        LongSet before = LongSet.copyOf(jdbc.queryForList("SELECT user_id FROM likes WHERE film_id = :id",
+                Map.of("id", filmId), Long.class));
+        List<Long> added = new ArrayList<>();
+        additions.forEachLong(userId -> {
+            if (!before.contains(userId)) added.add(userId);
+        });
+        List<Long> removed = new ArrayList<>();
+        removals.forEachLong(userId -> {
+            if (before.contains(userId)) removed.add(userId);
+        });
+        jdbc.getJdbcTemplate().batchUpdate("MERGE INTO likes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)",
+                added, batchSize, (ps, userId) -> {
+                    ps.setLong(1, filmId);
+                    ps.setLong(2, userId);
+                });
+        jdbc.getJdbcTemplate().batchUpdate("DELETE FROM likes WHERE film_id = ? AND user_id = ?", removed, batchSize,
+                (ps, userId) -> {
+                    ps.setLong(1, filmId);
+                    ps.setLong(2, userId);
+                });
+        touch(filmId);
+        List<StorageEvent> events = new ArrayList<>(added.size() + removed.size());
+        added.forEach(userId -> events.add(new StorageEvent.LikeAdded(filmId, userId)));
+        removed.forEach(userId -> events.add(new StorageEvent.LikeRemoved(filmId, userId)));
+        publish(events);
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Collection<Film> getPopular(int count) {
+        return getPopular(count, null, null);
+    }
+
+    /**
+     * Один запрос: число лайков агрегируется по первичному ключу {@code likes (film_id, user_id)},
+     * фильтр по дате идёт по индексу {@code films_release_date}. Лайки выбранных фильмов дочитываются вторым запросом.
+     */
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Collection<Film> getPopular(int count, LocalDate from, LocalDate to) {
+        MapSqlParameterSource params = new MapSqlParameterSource("count", count);
+        StringBuilder where = new StringBuilder();
+        if (from != null) {
+            where.append(" AND f.release_date >= :from");
+            params.addValue("from", from);
+        }
+        if (to != null) {
+            where.append(" AND f.release_date <= :to");
+            params.addValue("to", to);
+        }
+        String sql = "SELECT " + FILM_COLUMNS + ", COALESCE(c.likes, 0) AS likes FROM films f "
+                + "LEFT JOIN (SELECT film_id, COUNT(*) AS likes FROM likes GROUP BY film_id) c ON c.film_id = f.id "
+                + "WHERE 1 = 1" + where + " ORDER BY likes DESC, f.id LIMIT :count";
+        return withLikes(jdbc.query(sql, params, FILM_ROW));
+    }
+
+    @Override
+    public long count() {
+        Long count = jdbc.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM films", Long.class);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public long getVersion() {
+        return completed.get();
+    }
+
+    @Override
+    public long countLikes() {
+        Long count = jdbc.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM likes", Long.class);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    @Transactional
+    public void restore(Film film) {
+        film.setVersion(nextVersion());
+        jdbc.update("MERGE INTO films (id, name, description, release_date, duration, version) KEY (id) "
+                + "VALUES (:id, :name, :description, :releaseDate, :duration, :version)", params(film));
+        jdbc.update("DELETE FROM likes WHERE film_id = :id", Map.of("id", film.getId()));
+        insertLikes(film.getId(), film.getLikes());
+    }
+
+    /**
+     * Явный id не сдвигает счётчик IDENTITY, поэтому после восстановления он переставляется за максимальный id —
+     * один раз на всё восстановление и вне транзакции: DDL в H2 фиксирует открытую транзакцию.
+     */
+    @Override
+    public void finishRestore() {
+        Long next = jdbc.getJdbcTemplate().queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM films", Long.class);
+        jdbc.getJdbcTemplate().execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + next);
+    }
+
+    @Override
+    public void addListener(StorageListener listener) {
+        listeners.add(listener);
+    }
+
+    private void publish(StorageEvent event) {
+        publish(List.of(event));
+    }
+
+    /**
+     * Уведомляет слушателей после фиксации транзакции: откаченное изменение не попадает ни в журнал, ни в ленту,
+     * а слушатели не ждут внутри транзакции, держащей блокировки строк.
+     */
+    private void publish(List<StorageEvent> events) {
+        if (events.isEmpty() || listeners.isEmpty()) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notifyListeners(events);
+                }
+            });
+        } else {
+            notifyListeners(events);
+        }
+    }
+
+    private void notifyListeners(List<StorageEvent> events) {
+        for (StorageEvent event : events) {
+            for (StorageListener listener : listeners) {
+                listener.onEvent(event);
+            }
+        }
+    }
+
+    private void insertLikes(long filmId, LongSet likes) {
+        if (likes.isEmpty()) return;
+        jdbc.getJdbcTemplate().batchUpdate("INSERT INTO likes (film_id, user_id) VALUES (?, ?)",
+                new ArrayList<>(likes), batchSize, (ps, userId) -> {
+                    ps.setLong(1, filmId);
+                    ps.setLong(2, userId);
+                });
+    }
+
+    private List<Film> withLikes(List<Film> films) {
+        if (films.isEmpty()) return films;
+        Map<Long, List<Long>> likes = new HashMap<>();
+        jdbc.query("SELECT film_id, user_id FROM likes WHERE film_id IN (:ids) ORDER BY film_id, user_id",
+                Map.of("ids", films.stream().map(Film::getId).toList()), rs -> {
+                    likes.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getLong(2));
+                });
+        films.forEach(film -> film.setLikes(LongSet.copyOf(likes.getOrDefault(film.getId(), List.of()))));
+        return films;
+    }
+
+    /**
+     * Номер версии для изменяемого фильма; версия каталога сдвинется, когда транзакция зафиксируется.
+     * Синхронизация регистрируется раньше публикации событий, поэтому слушатели уже видят новую версию.
+     */
+    private long nextVersion() {
+        long version = versions.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    completed.incrementAndGet();
+                }
+            });
+        } else {
+            completed.incrementAndGet();
+        }
+        return version;
+    }
+
+    private void touch(long filmId) {
+        jdbc.update("UPDATE films SET version = :version WHERE id = :id",
+                new MapSqlParameterSource("version", nextVersion()).addValue("id", filmId));
+    }
+
+    private void requireExisting(Long id) {
+        if (!exists(id)) {
+            throw new NotFoundException("Фильм с ID " + id + " не найден");
+        }
+    }
+
+    /**
+     * Лайки из тела запроса ссылаются на пользователей внешним ключом: неизвестный пользователь — это 404,
+     * а не нарушение ограничения при вставке.
+     */
+    private void requireUsers(LongSet userIds) {
+        if (userIds.isEmpty()) return;
+        LongSet found = LongSet.copyOf(jdbc.queryForList("SELECT id FROM users WHERE id IN (:ids)",
+                Map.of("ids", new ArrayList<>(userIds)), Long.class));
+        userIds.forEachLong(userId -> {
+            if (!found.contains(userId)) {
+                throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+            }
+        });
+    }
+
+    private static MapSqlParameterSource params(Film film) {
+        return new MapSqlParameterSource()
+                .addValue("id", film.getId())
+                .addValue("name", film.getName())
+                .addValue("description", film.getDescription())
+                .addValue("releaseDate", film.getReleaseDate())
+                .addValue("duration", film.getDuration())
+                .addValue("version", film.getVersion());
+    }
+
+    private static MapSqlParameterSource likeParams(long filmId, long userId) {
+        return new MapSqlParameterSource("filmId", filmId).addValue("userId", userId);
+    }
+}
@@ -0,0 +1,255 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.ShardRing;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фильмы, разбитые по шардам (профиль {@code sharded}): каждый шард — отдельное хранилище в памяти со своим
+ * рейтингом, шард фильма выбирается по id через {@link ShardRing}. Лайки фильма живут на его шарде.
+ * Популярные собираются слиянием top-K каждого шарда: глобальные первые K обязательно входят
+ * в первые K своего шарда.
+ */
+@Component
+@Profile("sharded")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ShardedFilmStorage implements FilmStorage {
+    private static final Comparator<Film> BY_POPULARITY = Comparator
+            .comparingInt((Film film) -> film.getLikes().size())
+            .reversed()
+            .thenComparingLong(Film::getId);
+
+    private final StripedLock locks = new StripedLock(64);
+    private final AtomicLong nextId = new AtomicLong(1);
+    // Общий счётчик версий шардов: версии сущностей растут сквозь все шарды, как в одном хранилище.
+    private final AtomicLong clock = new AtomicLong();
+    private final List<StorageListener> listeners = new CopyOnWriteArrayList<>();
+    private InMemoryFilmStorage[] shards;
+    private ShardRing ring;
+
+    @Value("${filmorate.sharding.shards:4}")
+    private int shardCount;
+
+    @Value("${filmorate.sharding.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @PostConstruct
+    public void start() {
+        ring = new ShardRing(shardCount, virtualNodes);
+        shards = new InMemoryFilmStorage[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new InMemoryFilmStorage(clock);
+            // Изменения и лайки приходят от шарда; создание публикуется здесь, id выдаются сквозные.
+            shards[i].addListener(this::publish);
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public Film create(Film film) {
+        long id = nextId.getAndIncrement();
+        locks.lock(id);
+        try {
+            film.setId(id);
+            shard(id).restore(film);
+            publish(new StorageEvent.FilmSaved(film));
+        } finally {
+            locks.unlock(id);
+        }
+        return film;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public Film update(Film film) {
+        locks.lock(film.getId());
+        try {
+            return shard(film.getId()).update(film);
+        } finally {
+            locks.unlock(film.getId());
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void delete(Long id) {
+        locks.lock(id);
+        try {
+            shard(id).delete(id);
+        } finally {
+            locks.unlock(id);
+        }
+    }
+
+    @Override
+    public Film getById(Long id) {
+        return id != null ? shard(id).getById(id) : null;
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        return id != null && shard(id).exists(id);
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public Collection<Film> findAll() {
+        List<Film> result = new ArrayList<>();
+        for (InMemoryFilmStorage shard : shards) {
+            result.addAll(shard.findAll());
+        }
+        result.sort(Comparator.comparingLong(Film::getId));
+        return result;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public List<Film> getByIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (Long id : ids) {
+            if (id != null) byShard.computeIfAbsent(ring.shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Long, Film> found = new HashMap<>();
+        byShard.forEach((shard, shardIds) -> {
+            for (Film film : shards[shard].getByIds(shardIds)) {
+                found.put(film.getId(), film);
+            }
+        });
+        List<Film> result = new ArrayList<>(found.size());
+        for (Long id : ids) {
+            Film film = id != null ? found.get(id) : null;
+            if (film != null) result.add(film);
+        }
+        return result;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public List<Film> findPage(long afterId, int limit) {
+        // Каждый шард отдаёт свою страницу; общая — первые limit из их объединения.
+        List<Film> result = new ArrayList<>();
+        for (InMemoryFilmStorage shard : shards) {
+            result.addAll(shard.findPage(afterId, limit));
+        }
+        result.sort(Comparator.comparingLong(Film::getId));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void addLike(Long filmId, Long userId) {
+        shard(filmId).addLike(filmId, userId);
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void removeLike(Long filmId, Long userId) {
+        shard(filmId).removeLike(filmId, userId);
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void applyLikes(Long filmId, LongSet additions, LongSet removals) {
+        shard(filmId).applyLikes(filmId, additions, removals);
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public Collection<Film> getPopular(int count) {
+        List<Film> candidates = new ArrayList<>();
+        for (InMemoryFilmStorage shard : shards) {
+            candidates.addAll(shard.getPopular(count));
+        }
+        return top(candidates, count);
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public Collection<Film> getPopular(int count, LocalDate from, LocalDate to) {
+        List<Film> candidates = new ArrayList<>();
+        for (InMemoryFilmStorage shard : shards) {
+            candidates.addAll(shard.getPopular(count, from, to));
+        }
+        return top(candidates, count);
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (InMemoryFilmStorage shard : shards) {
+            count += shard.count();
+        }
+        return count;
+    }
+
+    @Override
+    public long getVersion() {
+        // Завершено всё до самой ранней незавершённой фиксации среди шардов.
+        long version = Long.MAX_VALUE;
+        for (InMemoryFilmStorage shard : shards) {
+            version = Math.min(version, shard.getVersion());
+        }
+        return version;
+    }
+
+    @Override
+    public long countLikes() {
+        long count = 0;
+        for (InMemoryFilmStorage shard : shards) {
+            count += shard.countLikes();
+        }
+        return count;
+    }
+
+    @Override
+    public void restore(Film film) {
+        long id = film.getId();
+        locks.lock(id);
+        try {
+            shard(id).restore(film);
+            nextId.accumulateAndGet(id + 1, Math::max);
+        } finally {
+            locks.unlock(id);
+        }
+    }
+
+    @Override
+    public void addListener(StorageListener listener) {
+        listeners.add(listener);
+    }
+
+    private void publish(StorageEvent event) {
+        for (StorageListener listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+
+    private InMemoryFilmStorage shard(long id) {
+        return shards[ring.shardOf(id)];
+    }
+
+    private static List<Film> top(List<Film> candidates, int count) {
+        candidates.sort(BY_POPULARITY);
+        return candidates.size() > count ? new ArrayList<>(candidates.subList(0, count)) : candidates;
+    }
+}
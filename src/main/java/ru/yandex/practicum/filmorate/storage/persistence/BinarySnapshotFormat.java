@@ -0,0 +1,311 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Компактный двоичный снимок. Файл состоит из заголовка и четырёх секций:
+ * записи фильмов и пользователей фиксированной длины, куча идентификаторов (лайки и друзья, по возрастанию)
+ * и куча строк в UTF-8. Записи ссылаются на кучи по смещению, поэтому при чтении файл отображается в память
+ * через {@link FileChannel#map}, а записи разбираются параллельно без промежуточного разбора текста.
+ * <p>
+ * Каждая секция ограничена 2 ГБ — пределом одного отображения.
+ */
+public class BinarySnapshotFormat implements SnapshotFormat {
+    static final int MAGIC = 0x464D534E;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int FILM_RECORD_SIZE = 48;
+    static final int USER_RECORD_SIZE = 48;
+
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int CHUNK = 4096;
+
+    @Override
+    public String fileName() {
+        return "snapshot.bin";
+    }
+
+    @Override
+    public void write(Path file, long walSegment, Collection<Film> films, Collection<User> users) throws IOException {
+        List<Film> filmList = new ArrayList<>(films);
+        List<User> userList = new ArrayList<>(users);
+        // Снимки множеств берутся один раз, чтобы размеры в заголовке совпали с записанными данными.
+        LongSet[] likes = new LongSet[filmList.size()];
+        LongSet[] friends = new LongSet[userList.size()];
+        long idCount = 0;
+        for (int i = 0; i < likes.length; i++) {
+            likes[i] = filmList.get(i).getLikes().snapshot();
+            idCount += likes[i].size();
+        }
+        for (int i = 0; i < friends.length; i++) {
+            friends[i] = userList.get(i).getFriends().snapshot();
+            idCount += friends[i].size();
+        }
+
+        long filmsOffset = HEADER_SIZE;
+        long usersOffset = filmsOffset + (long) filmList.size() * FILM_RECORD_SIZE;
+        long idsOffset = usersOffset + (long) userList.size() * USER_RECORD_SIZE;
+        long stringsOffset = idsOffset + idCount * Long.BYTES;
+
+        if (usersOffset - filmsOffset > Integer.MAX_VALUE || idsOffset - usersOffset > Integer.MAX_VALUE
+                || stringsOffset - idsOffset > Integer.MAX_VALUE) {
+            throw new IOException("Секция снимка больше 2 ГБ");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Section records = new Section(channel, filmsOffset);
+            Section ids = new Section(channel, idsOffset);
+            Section strings = new Section(channel, stringsOffset);
+
+            for (int i = 0; i < filmList.size(); i++) {
+                Film film = filmList.get(i);
+                records.putLong(film.getId());
+                records.putInt(epochDay(film.getReleaseDate()));
+                records.putInt(film.getDuration() != null ? film.getDuration() : NULL_INT);
+                putString(records, strings, film.getName());
+                putString(records, strings, film.getDescription());
+                putIds(records, ids, likes[i]);
+                records.putInt(0);
+            }
+            for (int i = 0; i < userList.size(); i++) {
+                User user = userList.get(i);
+                records.putLong(user.getId());
+                records.putInt(epochDay(user.getBirthday()));
+                putString(records, strings, user.getEmail());
+                putString(records, strings, user.getLogin());
+                putString(records, strings, user.getName());
+                putIds(records, ids, friends[i]);
+            }
+            records.flush();
+            ids.flush();
+            strings.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(walSegment)
+                    .putInt(filmList.size())
+                    .putInt(userList.size())
+                    .putLong(idCount)
+                    .putLong(strings.written())
+                    .flip();
+            channel.write(header, 0);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Потребители вызываются из нескольких потоков одновременно и в произвольном порядке.
+     */
+    @Override
+    public long read(Path file, Consumer<Film> films, Consumer<User> users) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Некорректный снимок: " + file);
+            }
+            ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Некорректный снимок: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка " + version + ": " + file);
+            }
+            long walSegment = header.getLong();
+            int filmCount = header.getInt();
+            int userCount = header.getInt();
+            long idCount = header.getLong();
+            long stringBytes = header.getLong();
+
+            long filmsOffset = HEADER_SIZE;
+            long usersOffset = filmsOffset + (long) filmCount * FILM_RECORD_SIZE;
+            long idsOffset = usersOffset + (long) userCount * USER_RECORD_SIZE;
+            long stringsOffset = idsOffset + idCount * Long.BYTES;
+            // Размеры из заголовка не доверяются: секция больше 2 ГБ не отображается и не адресуется смещением int.
+            if (filmCount < 0 || userCount < 0 || idCount < 0 || stringBytes < 0
+                    || idCount > Integer.MAX_VALUE / Long.BYTES || stringBytes > Integer.MAX_VALUE
+                    || usersOffset - filmsOffset > Integer.MAX_VALUE || idsOffset - usersOffset > Integer.MAX_VALUE) {
+                throw new IOException("Некорректный снимок: " + file);
+            }
+            if (channel.size() < stringsOffset + stringBytes) {
+                throw new IOException("Снимок обрезан: " + file);
+            }
+
+            ByteBuffer filmRecords = map(channel, filmsOffset, usersOffset - filmsOffset);
+            ByteBuffer userRecords = map(channel, usersOffset, idsOffset - usersOffset);
+            ByteBuffer ids = map(channel, idsOffset, stringsOffset - idsOffset);
+            ByteBuffer strings = map(channel, stringsOffset, stringBytes);
+
+            // Записи фиксированной длины, поэтому файл делится на независимые куски без предварительного прохода.
+            IntStream.range(0, (filmCount + CHUNK - 1) / CHUNK).parallel().forEach(chunk -> {
+                int end = Math.min(filmCount, (chunk + 1) * CHUNK);
+                for (int i = chunk * CHUNK; i < end; i++) {
+                    films.accept(readFilm(filmRecords, i * FILM_RECORD_SIZE, ids, strings));
+                }
+            });
+            IntStream.range(0, (userCount + CHUNK - 1) / CHUNK).parallel().forEach(chunk -> {
+                int end = Math.min(userCount, (chunk + 1) * CHUNK);
+                for (int i = chunk * CHUNK; i < end; i++) {
+                    users.accept(readUser(userRecords, i * USER_RECORD_SIZE, ids, strings));
+                }
+            });
+            return walSegment;
+        }
+    }
+
+    private static Film readFilm(ByteBuffer records, int at, ByteBuffer ids, ByteBuffer strings) {
+        Film film = new Film();
+        film.setId(records.getLong(at));
+        film.setReleaseDate(date(records.getInt(at + 8)));
+        int duration = records.getInt(at + 12);
+        film.setDuration(duration != NULL_INT ? duration : null);
+        film.setName(string(strings, records.getInt(at + 16), records.getInt(at + 20)));
+        film.setDescription(string(strings, records.getInt(at + 24), records.getInt(at + 28)));
+        film.setLikes(readIds(ids, records.getLong(at + 32), records.getInt(at + 40)));
+        return film;
+    }
+
+    private static User readUser(ByteBuffer records, int at, ByteBuffer ids, ByteBuffer strings) {
+        User user = new User();
+        user.setId(records.getLong(at));
+        user.setBirthday(date(records.getInt(at + 8)));
+        user.setEmail(string(strings, records.getInt(at + 12), records.getInt(at + 16)));
+        user.setLogin(string(strings, records.getInt(at + 20), records.getInt(at + 24)));
+        user.setName(string(strings, records.getInt(at + 28), records.getInt(at + 32)));
+        user.setFriends(readIds(ids, records.getLong(at + 36), records.getInt(at + 44)));
+        return user;
+    }
+
+    private static LongSet readIds(ByteBuffer ids, long first, int count) {
+        // Секция не больше 2 ГБ, поэтому смещение за её пределами — признак порчи, а не повод для переполнения.
+        int at = Math.toIntExact(Math.multiplyExact(first, Long.BYTES));
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = ids.getLong(at + i * Long.BYTES);
+        }
+        return LongSet.ofSorted(values);
+    }
+
+    private static String string(ByteBuffer strings, int offset, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        strings.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDate date(int epochDay) {
+        return epochDay != NULL_INT ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date != null ? (int) date.toEpochDay() : NULL_INT;
+    }
+
+    private static void putString(Section records, Section strings, String value) throws IOException {
+        if (value == null) {
+            records.putInt(0);
+            records.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // Смещение в записи — int: строка, не влезающая в 2 ГБ кучи, обрывает запись до того, как смещение обрежется.
+        if (strings.written() + bytes.length > Integer.MAX_VALUE) {
+            throw new IOException("Секция снимка больше 2 ГБ");
+        }
+        records.putInt((int) strings.written());
+        records.putInt(bytes.length);
+        strings.put(bytes);
+    }
+
+    private static void putIds(Section records, Section ids, LongSet values) throws IOException {
+        records.putLong(ids.written() / Long.BYTES);
+        records.putInt(values.size());
+        PrimitiveIterator.OfLong it = values.iterator();
+        while (it.hasNext()) {
+            ids.putLong(it.nextLong());
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Буферизованная запись в свою область файла: секции пишутся одновременно, каждая со своей позиции.
+     */
+    private static final class Section {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+        private long written;
+
+        Section(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+            written += Integer.BYTES;
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+            written += Long.BYTES;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+            written += bytes.length;
+        }
+
+        long written() {
+            return written;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Снимок в виде одного JSON-документа; пишется и читается потоково, без построения всего дерева в памяти.
+ */
+@RequiredArgsConstructor
+public class JsonSnapshotFormat implements SnapshotFormat {
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String fileName() {
+        return "snapshot.json";
+    }
+
+    @Override
+    public void write(Path file, long walSegment, Collection<Film> films, Collection<User> users) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file);
+             JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeNumberField("walSegment", walSegment);
+            generator.writeArrayFieldStart("films");
+            for (Film film : films) {
+                generator.writeObject(film);
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("users");
+            for (User user : users) {
+                generator.writeObject(user);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    @Override
+    public long read(Path file, Consumer<Film> films, Consumer<User> users) throws IOException {
+        long walSegment = 0;
+        try (JsonParser parser = objectMapper.createParser(file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Некорректный снимок: " + file);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "walSegment" -> walSegment = parser.getLongValue();
+                    case "films" -> {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            films.accept(parser.readValueAs(Film.class));
+                        }
+                    }
+                    case "users" -> {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            users.accept(parser.readValueAs(User.class));
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return walSegment;
+    }
+}
@@ -0,0 +1,211 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Делает хранилища в памяти долговечными: каждое изменение пишется в журнал, журнал периодически
+ * сворачивается в снимок. При старте загружается последний снимок и воспроизводится хвост журнала.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.persistence.enabled", havingValue = "true")
+public class PersistenceManager implements StorageListener {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final ObjectWriter eventWriter;
+    private final ObjectReader eventReader;
+    private final Map<String, SnapshotFormat> snapshotFormats;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    @Value("${filmorate.persistence.dir:data}")
+    private String dir;
+
+    @Value("${filmorate.persistence.fsync:batched}")
+    private String fsync;
+
+    @Value("${filmorate.persistence.fsync-interval-ms:10}")
+    private long fsyncIntervalMs;
+
+    @Value("${filmorate.persistence.snapshot-interval-seconds:300}")
+    private long snapshotIntervalSeconds;
+
+    @Value("${filmorate.persistence.snapshot-format:binary}")
+    private String snapshotFormatName;
+
+    private Path directory;
+    private SnapshotFormat snapshotFormat;
+    private WriteAheadLog wal;
+
+    @Autowired
+    public PersistenceManager(FilmStorage filmStorage, UserStorage userStorage, ObjectMapper objectMapper) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.eventWriter = objectMapper.writerFor(StorageEvent.class);
+        this.eventReader = objectMapper.readerFor(StorageEvent.class);
+        this.snapshotFormats = Map.of(
+                "json", new JsonSnapshotFormat(objectMapper),
+                "binary", new BinarySnapshotFormat());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        directory = Path.of(dir);
+        Files.createDirectories(directory);
+        snapshotFormat = snapshotFormats.get(snapshotFormatName.toLowerCase(Locale.ROOT));
+        if (snapshotFormat == null) {
+            throw new IllegalArgumentException("Неизвестный формат снимка: " + snapshotFormatName);
+        }
+        long started = System.nanoTime();
+
+        long fromSegment = 0;
+        SnapshotFormat existing = findSnapshot();
+        if (existing != null) {
+            fromSegment = existing.read(directory.resolve(existing.fileName()),
+                    filmStorage::restore, userStorage::restore);
+        }
+        List<Long> segments = WriteAheadLog.segments(directory);
+        long replayed = 0;
+        for (long segment : segments) {
+            if (segment >= fromSegment) {
+                long[] count = {0};
+                WriteAheadLog.read(directory, segment, payload -> {
+                    replay(payload);
+                    count[0]++;
+                });
+                replayed += count[0];
+            }
+        }
+        filmStorage.finishRestore();
+        userStorage.finishRestore();
+        long nextSegment = Math.max(fromSegment, segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1);
+        WriteAheadLog.FsyncPolicy policy = WriteAheadLog.FsyncPolicy.valueOf(fsync.toUpperCase(Locale.ROOT));
+        wal = new WriteAheadLog(directory, nextSegment, policy, Duration.ofMillis(fsyncIntervalMs));
+        log.info("Восстановлено из {}: снимок {}, {} записей журнала за {} мс, fsync={}", directory,
+                existing != null ? existing.fileName() : "-", replayed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), policy);
+
+        filmStorage.addListener(this);
+        userStorage.addListener(this);
+        scheduler.scheduleWithFixedDelay(this::compactQuietly,
+                snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void onEvent(StorageEvent event) {
+        CompletableFuture<Void> written;
+        try {
+            written = wal.append(eventWriter.writeValueAsBytes(event));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (wal.getPolicy() == WriteAheadLog.FsyncPolicy.ALWAYS) {
+            written.join();
+        }
+    }
+
+    /**
+     * Начинает новый сегмент журнала, записывает снимок текущего состояния и удаляет сегменты, вошедшие в снимок.
+     * Снимок не атомарен относительно записи, но все изменения после переключения сегмента
+     * воспроизводятся поверх него повторно, а все операции журнала идемпотентны.
+     */
+    public void compact() throws IOException {
+        // ReentrantLock, а не synchronized: сжатие может вызываться из виртуального потока и ждёт ввода-вывода.
+        compactionLock.lock();
+        try {
+            long segment = wal.rotate();
+            Path snapshot = directory.resolve(snapshotFormat.fileName());
+            Path tmp = directory.resolve(snapshotFormat.fileName() + ".tmp");
+            snapshotFormat.write(tmp, segment, filmStorage.findAll(), userStorage.findAll());
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (SnapshotFormat other : snapshotFormats.values()) {
+                if (other != snapshotFormat) {
+                    Files.deleteIfExists(directory.resolve(other.fileName()));
+                }
+            }
+            WriteAheadLog.deleteSegmentsBefore(directory, segment);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        scheduler.shutdownNow();
+        wal.close();
+    }
+
+    /**
+     * Снимок в настроенном формате, а если его нет — в любом другом: после смены формата
+     * старый снимок остаётся единственной копией данных до следующего сжатия.
+     */
+    private SnapshotFormat findSnapshot() {
+        if (Files.exists(directory.resolve(snapshotFormat.fileName()))) {
+            return snapshotFormat;
+        }
+        return snapshotFormats.values().stream()
+                .filter(format -> Files.exists(directory.resolve(format.fileName())))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось записать снимок", e);
+        }
+    }
+
+    private void replay(byte[] payload) {
+        StorageEvent event;
+        try {
+            event = eventReader.readValue(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            switch (event) {
+                case StorageEvent.FilmSaved e -> filmStorage.restore(e.film());
+                case StorageEvent.FilmDeleted e -> filmStorage.delete(e.filmId());
+                case StorageEvent.LikeAdded e -> filmStorage.addLike(e.filmId(), e.userId());
+                case StorageEvent.LikeRemoved e -> filmStorage.removeLike(e.filmId(), e.userId());
+                case StorageEvent.UserSaved e -> userStorage.restore(e.user());
+                case StorageEvent.UserDeleted e -> userStorage.delete(e.userId());
+                case StorageEvent.FriendAdded e -> userStorage.addFriend(e.userId(), e.friendId());
+                case StorageEvent.FriendRemoved e -> userStorage.removeFriend(e.userId(), e.friendId());
+            }
+        } catch (NotFoundException ignore) {
+            // Сущность уже удалена позже в журнале или вошла в снимок в конечном состоянии.
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Формат файла снимка. Снимок хранит номер сегмента журнала, с которого нужно продолжить воспроизведение.
+ */
+public interface SnapshotFormat {
+    String fileName();
+
+    void write(Path file, long walSegment, Collection<Film> films, Collection<User> users) throws IOException;
+
+    /**
+     * Читает снимок, передавая сущности потребителям, и возвращает номер сегмента журнала.
+     * Реализация может вызывать потребителей из нескольких потоков.
+     */
+    long read(Path file, Consumer<Film> films, Consumer<User> users) throws IOException;
+}
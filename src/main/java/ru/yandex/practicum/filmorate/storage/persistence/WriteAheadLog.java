@@ -0,0 +1,256 @@
+package ru.yandex.practicum.filmorate.storage.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений с групповой фиксацией: записи из всех потоков накапливаются в очереди,
+ * а отдельный поток пишет их пачкой и выполняет fsync согласно {@link FsyncPolicy}.
+ * Журнал разбит на сегменты, чтобы после снимка старые сегменты можно было удалить.
+ * Формат записи: длина (int), CRC32 (int), данные.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d+)\\.log");
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    // Предел одной записи: длина из повреждённого заголовка не должна превращаться в огромный буфер при чтении.
+    static final int MAX_RECORD_SIZE = 64 << 20;
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final long fsyncIntervalNanos;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock segmentLock = new ReentrantLock();
+    private final Thread writer;
+    private FileChannel channel;
+    private long segment;
+    private long lastForce = System.nanoTime();
+    private boolean dirty;
+    private volatile boolean closed;
+
+    public WriteAheadLog(Path directory, long segment, FsyncPolicy policy, Duration fsyncInterval) throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        this.segment = segment;
+        Files.createDirectories(directory);
+        this.channel = open(segment);
+        this.writer = new Thread(this::run, "wal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Ставит запись в очередь. Возвращаемый future завершается после записи в файл,
+     * а при политике {@link FsyncPolicy#ALWAYS} — после fsync.
+     */
+    public CompletableFuture<Void> append(byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("Журнал закрыт");
+        }
+        if (payload.length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Запись журнала больше " + MAX_RECORD_SIZE + " байт");
+        }
+        Entry entry = new Entry(payload, new CompletableFuture<>());
+        queue.add(entry);
+        return entry.done();
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает новый. Возвращает номер нового сегмента.
+     */
+    public long rotate() throws IOException {
+        segmentLock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+            segment++;
+            channel = open(segment);
+            dirty = false;
+            return segment;
+        } finally {
+            segmentLock.unlock();
+        }
+    }
+
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segmentLock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+        } finally {
+            segmentLock.unlock();
+        }
+    }
+
+    public static List<Long> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Читает записи сегмента по порядку. Недописанный или повреждённый хвост (сбой во время записи) пропускается:
+     * и несовпавшая CRC, и длина за пределами {@link #MAX_RECORD_SIZE} или остатка сегмента.
+     */
+    public static void read(Path directory, long segment, Consumer<byte[]> consumer) throws IOException {
+        Path file = directory.resolve(fileName(segment));
+        long remaining = Files.size(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    remaining -= RECORD_HEADER_SIZE;
+                    if (length < 0 || length > MAX_RECORD_SIZE || length > remaining) {
+                        return;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    remaining -= length;
+                } catch (EOFException e) {
+                    return;
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    return;
+                }
+                consumer.accept(payload);
+            }
+        }
+    }
+
+    public static void deleteSegmentsBefore(Path directory, long segment) throws IOException {
+        for (long existing : segments(directory)) {
+            if (existing < segment) {
+                Files.deleteIfExists(directory.resolve(fileName(existing)));
+            }
+        }
+    }
+
+    private static String fileName(long segment) {
+        return String.format("wal-%016d.log", segment);
+    }
+
+    private FileChannel open(long segment) throws IOException {
+        return FileChannel.open(directory.resolve(fileName(segment)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>();
+        long pollNanos = policy == FsyncPolicy.BATCHED ? fsyncIntervalNanos : TimeUnit.MILLISECONDS.toNanos(100);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(pollNanos, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closed = true;
+            }
+            segmentLock.lock();
+            try {
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+                if (dirty && (policy == FsyncPolicy.ALWAYS
+                        || policy == FsyncPolicy.BATCHED && System.nanoTime() - lastForce >= fsyncIntervalNanos)) {
+                    channel.force(false);
+                    lastForce = System.nanoTime();
+                    dirty = false;
+                }
+                batch.forEach(entry -> entry.done().complete(null));
+            } catch (IOException e) {
+                batch.forEach(entry -> entry.done().completeExceptionally(new UncheckedIOException(e)));
+            } finally {
+                segmentLock.unlock();
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) throws IOException {
+        int size = 0;
+        for (Entry entry : batch) {
+            size += 8 + entry.payload().length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (Entry entry : batch) {
+            crc.reset();
+            crc.update(entry.payload());
+            buffer.putInt(entry.payload().length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(entry.payload());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        dirty = true;
+    }
+
+    public enum FsyncPolicy {
+        /**
+         * fsync после каждой пачки, вызывающий поток ждёт его завершения.
+         */
+        ALWAYS,
+        /**
+         * fsync не чаще заданного интервала; при сбое можно потерять изменения за последний интервал.
+         */
+        BATCHED,
+        /**
+         * Сброс на диск оставлен операционной системе.
+         */
+        ASYNC
+    }
+
+    private record Entry(byte[] payload, CompletableFuture<Void> done) {
+    }
+}
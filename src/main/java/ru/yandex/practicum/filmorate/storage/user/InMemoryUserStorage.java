@@ -1,63 +1,309 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import org.springframework.validation.annotation.Validated;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
-import ru.yandex.practicum.filmorate.model.Marker;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
+import ru.yandex.practicum.filmorate.storage.VersionedMap;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Пользователи в памяти; как и фильмы, хранятся неизменяемыми версиями в {@link VersionedMap}.
+ * Дружба меняет обоих пользователей одной фиксацией, поэтому снимок не видит её наполовину.
+ */
 @Component
-@RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Validated
+@Profile("!jdbc & !sharded")
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
-    private long nextId = 1;
+    private final VersionedMap<User> users;
+    // Размер карты не ведётся, поэтому считается отдельно.
+    private final LongAdder userCount = new LongAdder();
+    private final StripedLock locks = new StripedLock(64);
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final LongAdder friendLinkCount = new LongAdder();
+    private final List<StorageListener> listeners = new CopyOnWriteArrayList<>();
+
+    public InMemoryUserStorage() {
+        this(new AtomicLong());
+    }
+
+    /**
+     * Хранилище со счётчиком версий {@code clock}, общим с другими шардами.
+     */
+    InMemoryUserStorage(AtomicLong clock) {
+        users = new VersionedMap<>(clock);
+    }
 
     @Override
-    @Validated(Marker.OnCreate.class)
+    @Timed("filmorate.storage")
     public User create(User user) {
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
         }
-        user.setId(nextId++);
-        users.put(user.getId(), user);
+        long id = nextId.getAndIncrement();
+        locks.lock(id);
+        try {
+            long stamp = users.begin();
+            try {
+                user.setId(id);
+                user.setVersion(stamp);
+                users.put(id, user, stamp);
+                userCount.increment();
+                friendLinkCount.add(user.getFriends().size());
+            } finally {
+                users.commit(stamp);
+            }
+            publish(new StorageEvent.UserSaved(user));
+        } finally {
+            locks.unlock(id);
+        }
         return user;
     }
 
     @Override
-    @Validated(Marker.OnUpdate.class)
+    @Timed("filmorate.storage")
     public User update(User user) {
-        if (!users.containsKey(user.getId())) {
-            throw new NotFoundException("Пользователь с ID " + user.getId() + " не найден");
-        }
+        getExisting(user.getId());
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
         }
-        users.put(user.getId(), user);
+        locks.lock(user.getId());
+        try {
+            long stamp = users.begin();
+            try {
+                User previous = getExisting(user.getId());
+                user.setVersion(stamp);
+                users.put(user.getId(), user, stamp);
+                friendLinkCount.add(user.getFriends().size() - previous.getFriends().size());
+            } finally {
+                users.commit(stamp);
+            }
+            publish(new StorageEvent.UserSaved(user));
+        } finally {
+            locks.unlock(user.getId());
+        }
         return user;
     }
 
     @Override
+    @Timed("filmorate.storage")
     public void delete(Long id) {
-        if (!users.containsKey(id)) {
-            throw new NotFoundException("Пользователь с ID " + id + " не найден");
+        locks.lock(id);
+        try {
+            long stamp = users.begin();
+            try {
+                User removed = users.remove(id, stamp);
+                if (removed == null) {
+                    throw new NotFoundException("Пользователь с ID " + id + " не найден");
+                }
+                userCount.decrement();
+                friendLinkCount.add(-removed.getFriends().size());
+            } finally {
+                users.commit(stamp);
+            }
+            publish(new StorageEvent.UserDeleted(id));
+        } finally {
+            locks.unlock(id);
         }
-        users.remove(id);
     }
 
     @Override
+    // Без таймера: вызывается в циклах по друзьям и лайкам, а время запроса уже покрыто http.server.requests.
     public User getById(Long id) {
         return users.get(id);
     }
 
     @Override
+    public boolean exists(Long id) {
+        return id != null && users.get(id) != null;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
     public Collection<User> findAll() {
-        return users.values();
+        return users.read(snapshot -> snapshot.values(Long.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public List<User> getByIds(Collection<Long> ids) {
+        return users.read(snapshot -> snapshot.values(ids));
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public List<User> findPage(long afterId, int limit) {
+        return users.read(snapshot -> snapshot.values(afterId, limit));
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void addFriend(Long userId, Long friendId) {
+        locks.lockBoth(userId, friendId);
+        try {
+            User user = getExisting(userId);
+            User friend = getExisting(friendId);
+            if (user.getFriends().contains(friendId) && friend.getFriends().contains(userId)) return;
+            long stamp = users.begin();
+            try {
+                User nextUser = copy(user, stamp);
+                int added = nextUser.getFriends().add(friendId) ? 1 : 0;
+                users.put(userId, nextUser, stamp);
+                // Перечитывается после записи: при дружбе с собой это уже новая версия.
+                User nextFriend = copy(getExisting(friendId), stamp);
+                added += nextFriend.getFriends().add(userId) ? 1 : 0;
+                users.put(friendId, nextFriend, stamp);
+                friendLinkCount.add(added);
+            } finally {
+                users.commit(stamp);
+            }
+            publish(new StorageEvent.FriendAdded(userId, friendId));
+        } finally {
+            locks.unlockBoth(userId, friendId);
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void removeFriend(Long userId, Long friendId) {
+        locks.lockBoth(userId, friendId);
+        try {
+            User user = getExisting(userId);
+            User friend = getExisting(friendId);
+            if (!user.getFriends().contains(friendId) && !friend.getFriends().contains(userId)) return;
+            long stamp = users.begin();
+            try {
+                User nextUser = copy(user, stamp);
+                int removed = nextUser.getFriends().remove(friendId) ? 1 : 0;
+                users.put(userId, nextUser, stamp);
+                User nextFriend = copy(getExisting(friendId), stamp);
+                removed += nextFriend.getFriends().remove(userId) ? 1 : 0;
+                users.put(friendId, nextFriend, stamp);
+                friendLinkCount.add(-removed);
+            } finally {
+                users.commit(stamp);
+            }
+            publish(new StorageEvent.FriendRemoved(userId, friendId));
+        } finally {
+            locks.unlockBoth(userId, friendId);
+        }
+    }
+
+    /**
+     * Односторонне добавляет или убирает {@code friendId} из друзей {@code userId} без уведомления слушателей;
+     * нужно шардированному хранилищу, когда пользователи дружбы лежат на разных шардах.
+     */
+    boolean link(Long userId, Long friendId, boolean add) {
+        locks.lock(userId);
+        try {
+            User user = getExisting(userId);
+            if (user.getFriends().contains(friendId) == add) return false;
+            long stamp = users.begin();
+            try {
+                User next = copy(user, stamp);
+                if (add) {
+                    next.getFriends().add(friendId);
+                } else {
+                    next.getFriends().remove(friendId);
+                }
+                users.put(userId, next, stamp);
+                friendLinkCount.add(add ? 1 : -1);
+            } finally {
+                users.commit(stamp);
+            }
+            return true;
+        } finally {
+            locks.unlock(userId);
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public List<User> getFriends(Long userId) {
+        return users.read(snapshot -> snapshot.values(existing(snapshot, userId).getFriends()));
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public List<User> getCommonFriends(Long userId, Long otherId) {
+        return users.read(snapshot -> snapshot.values(existing(snapshot, userId).getFriends()
+                .intersect(existing(snapshot, otherId).getFriends())));
+    }
+
+    @Override
+    public long count() {
+        return userCount.sum();
+    }
+
+    @Override
+    public long countFriendLinks() {
+        return friendLinkCount.sum();
+    }
+
+    @Override
+    public void restore(User user) {
+        long id = user.getId();
+        locks.lock(id);
+        long stamp = users.begin();
+        try {
+            user.setVersion(stamp);
+            User previous = users.put(id, user, stamp);
+            if (previous == null) userCount.increment();
+            friendLinkCount.add(user.getFriends().size() - (previous != null ? previous.getFriends().size() : 0));
+            nextId.accumulateAndGet(id + 1, Math::max);
+        } finally {
+            users.commit(stamp);
+            locks.unlock(id);
+        }
+    }
+
+    @Override
+    public void addListener(StorageListener listener) {
+        listeners.add(listener);
+    }
+
+    private void publish(StorageEvent event) {
+        for (StorageListener listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+
+    /**
+     * Новая версия пользователя с теми же полями; список друзей копируется снимком за O(1).
+     */
+    private static User copy(User user, long stamp) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setLogin(user.getLogin());
+        copy.setName(user.getName());
+        copy.setBirthday(user.getBirthday());
+        copy.setFriends(user.getFriends());
+        copy.setVersion(stamp);
+        return copy;
+    }
+
+    private static User existing(VersionedMap.Snapshot<User> snapshot, Long id) {
+        User user = id != null ? snapshot.get(id) : null;
+        if (user == null) {
+            throw new NotFoundException("Пользователь с ID " + id + " не найден");
+        }
+        return user;
+    }
+
+    private User getExisting(Long id) {
+        User user = id != null ? users.get(id) : null;
+        if (user == null) {
+            throw new NotFoundException("Пользователь с ID " + id + " не найден");
+        }
+        return user;
     }
 }
@@ -0,0 +1,355 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Хранилище пользователей в реляционной БД (профиль {@code jdbc}). Дружба хранится в таблице {@code friendships}
+ * двумя строками, по одной на направление; друзья и общие друзья выбираются одним соединением.
+ */
+@Component
+@Profile("jdbc")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class JdbcUserStorage implements UserStorage {
+    private static final String USER_COLUMNS = "u.id, u.email, u.login, u.name, u.birthday, u.version";
+    private static final RowMapper<User> USER_ROW = (rs, rowNum) -> {
+        User user = new User();
+        user.setId(rs.getLong("id"));
+        user.setEmail(rs.getString("email"));
+        user.setLogin(rs.getString("login"));
+        user.setName(rs.getString("name"));
+        Date birthday = rs.getDate("birthday");
+        user.setBirthday(birthday != null ? birthday.toLocalDate() : null);
+        user.setVersion(rs.getLong("version"));
+        return user;
+    };
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final AtomicLong versions = new AtomicLong();
+    private final List<StorageListener> listeners = new CopyOnWriteArrayList<>();
+
+    @Value("${filmorate.jdbc.batch-size:1000}")
+    private int batchSize;
+
+    @PostConstruct
+    public void start() {
+        Long max = jdbc.getJdbcTemplate().queryForObject("SELECT COALESCE(MAX(version), 0) FROM users", Long.class);
+        versions.accumulateAndGet(max != null ? max : 0, Math::max);
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional
+    public User create(User user) {
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+        user.setVersion(versions.incrementAndGet());
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbc.update("INSERT INTO users (email, login, name, birthday, version) "
+                + "VALUES (:email, :login, :name, :birthday, :version)", params(user), keys, new String[]{"id"});
+        user.setId(keys.getKeyAs(Long.class));
+        requireFriends(user.getFriends());
+        insertFriends(user.getId(), user.getFriends());
+        publish(new StorageEvent.UserSaved(user));
+        return user;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional
+    public User update(User user) {
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+        user.setVersion(versions.incrementAndGet());
+        int updated = jdbc.update("UPDATE users SET email = :email, login = :login, name = :name, "
+                + "birthday = :birthday, version = :version WHERE id = :id", params(user));
+        if (updated == 0) {
+            throw new NotFoundException("Пользователь с ID " + user.getId() + " не найден");
+        }
+        // Как и в памяти, обновление заменяет список друзей пользователя переданным.
+        requireFriends(user.getFriends());
+        jdbc.update("DELETE FROM friendships WHERE user_id = :id", Map.of("id", user.getId()));
+        insertFriends(user.getId(), user.getFriends());
+        publish(new StorageEvent.UserSaved(user));
+        return user;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional
+    public void delete(Long id) {
+        if (jdbc.update("DELETE FROM users WHERE id = :id", Map.of("id", id)) == 0) {
+            throw new NotFoundException("Пользователь с ID " + id + " не найден");
+        }
+        versions.incrementAndGet();
+        publish(new StorageEvent.UserDeleted(id));
+    }
+
+    @Override
+    public User getById(Long id) {
+        List<User> users = jdbc.query("SELECT " + USER_COLUMNS + " FROM users u WHERE u.id = :id",
+                Map.of("id", id), USER_ROW);
+        return users.isEmpty() ? null : withFriends(users).get(0);
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        return id != null && jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE id = :id", Map.of("id", id),
+                Integer.class) > 0;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Collection<User> findAll() {
+        List<User> users = jdbc.query("SELECT " + USER_COLUMNS + " FROM users u ORDER BY u.id", USER_ROW);
+        Map<Long, List<Long>> friends = new HashMap<>();
+        jdbc.query("SELECT user_id, friend_id FROM friendships ORDER BY user_id, friend_id", rs -> {
+            friends.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getLong(2));
+        });
+        users.forEach(user -> user.setFriends(LongSet.copyOf(friends.getOrDefault(user.getId(), List.of()))));
+        return users;
+    }
+
+    /**
+     * Один запрос {@code IN} на все id и один на их списки друзей; порядок восстанавливается в памяти.
+     */
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<User> getByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, User> found = new HashMap<>();
+        withFriends(jdbc.query("SELECT " + USER_COLUMNS + " FROM users u WHERE u.id IN (:ids)",
+                Map.of("ids", ids), USER_ROW)).forEach(user -> found.put(user.getId(), user));
+        List<User> result = new ArrayList<>(found.size());
+        for (Long id : ids) {
+            User user = found.get(id);
+            if (user != null) result.add(user);
+        }
+        return result;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<User> findPage(long afterId, int limit) {
+        return withFriends(jdbc.query("SELECT " + USER_COLUMNS + " FROM users u WHERE u.id > :after ORDER BY u.id "
+                + "LIMIT :limit", new MapSqlParameterSource("after", afterId).addValue("limit", limit), USER_ROW));
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional
+    public void addFriend(Long userId, Long friendId) {
+        requireExisting(userId);
+        requireExisting(friendId);
+        boolean added = insertFriendship(userId, friendId);
+        added |= insertFriendship(friendId, userId);
+        if (added) {
+            touch(userId, friendId);
+            publish(new StorageEvent.FriendAdded(userId, friendId));
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional
+    public void removeFriend(Long userId, Long friendId) {
+        requireExisting(userId);
+        requireExisting(friendId);
+        int removed = jdbc.update("DELETE FROM friendships WHERE (user_id = :userId AND friend_id = :friendId) "
+                + "OR (user_id = :friendId AND friend_id = :userId)",
+                new MapSqlParameterSource("userId", userId).addValue("friendId", friendId));
+        if (removed > 0) {
+            touch(userId, friendId);
+            publish(new StorageEvent.FriendRemoved(userId, friendId));
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<User> getFriends(Long userId) {
+        requireExisting(userId);
+        return withFriends(jdbc.query("SELECT " + USER_COLUMNS + " FROM friendships f "
+                + "JOIN users u ON u.id = f.friend_id WHERE f.user_id = :id ORDER BY u.id", Map.of("id", userId),
+                USER_ROW));
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<User> getCommonFriends(Long userId, Long otherId) {
+        requireExisting(userId);
+        requireExisting(otherId);
+        return withFriends(jdbc.query("SELECT " + USER_COLUMNS + " FROM friendships a "
+                + "JOIN friendships b ON b.friend_id = a.friend_id AND b.user_id = :otherId "
+                + "JOIN users u ON u.id = a.friend_id WHERE a.user_id = :userId ORDER BY u.id",
+                new MapSqlParameterSource("userId", userId).addValue("otherId", otherId), USER_ROW));
+    }
+
+    @Override
+    public long count() {
+        Long count = jdbc.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public long countFriendLinks() {
+        Long count = jdbc.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM friendships", Long.class);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    @Transactional
+    public void restore(User user) {
+        user.setVersion(versions.incrementAndGet());
+        jdbc.update("MERGE INTO users (id, email, login, name, birthday, version) KEY (id) "
+                + "VALUES (:id, :email, :login, :name, :birthday, :version)", params(user));
+        jdbc.update("DELETE FROM friendships WHERE user_id = :id", Map.of("id", user.getId()));
+        insertFriends(user.getId(), user.getFriends());
+    }
+
+    /**
+     * Как и у фильмов, счётчик IDENTITY сдвигается один раз после всего восстановления.
+     */
+    @Override
+    public void finishRestore() {
+        Long next = jdbc.getJdbcTemplate().queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM users", Long.class);
+        jdbc.getJdbcTemplate().execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + next);
+    }
+
+    @Override
+    public void addListener(StorageListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Уведомляет слушателей после фиксации транзакции, как и хранилище фильмов.
+     */
+    private void publish(StorageEvent event) {
+        if (listeners.isEmpty()) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notifyListeners(event);
+                }
+            });
+        } else {
+            notifyListeners(event);
+        }
+    }
+
+    private void notifyListeners(StorageEvent event) {
+        for (StorageListener listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+
+    /**
+     * Вставляет одно направление дружбы; {@code false}, если строка уже есть, в том числе вставленная
+     * параллельным запросом.
+     */
+    private boolean insertFriendship(long userId, long friendId) {
+        try {
+            jdbc.update("INSERT INTO friendships (user_id, friend_id) VALUES (:userId, :friendId)",
+                    new MapSqlParameterSource("userId", userId).addValue("friendId", friendId));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private void insertFriends(long userId, LongSet friends) {
+        if (friends.isEmpty()) return;
+        jdbc.getJdbcTemplate().batchUpdate("INSERT INTO friendships (user_id, friend_id) VALUES (?, ?)",
+                new ArrayList<>(friends), batchSize, (ps, friendId) -> {
+                    ps.setLong(1, userId);
+                    ps.setLong(2, friendId);
+                });
+    }
+
+    /**
+     * Дочитывает списки друзей одним запросом на всю выборку: модель отдаёт их в JSON вместе с пользователем.
+     */
+    private List<User> withFriends(List<User> users) {
+        if (users.isEmpty()) return users;
+        Map<Long, List<Long>> friends = new HashMap<>();
+        jdbc.query("SELECT user_id, friend_id FROM friendships WHERE user_id IN (:ids) ORDER BY user_id, friend_id",
+                Map.of("ids", users.stream().map(User::getId).toList()), rs -> {
+                    friends.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getLong(2));
+                });
+        users.forEach(user -> user.setFriends(LongSet.copyOf(friends.getOrDefault(user.getId(), List.of()))));
+        return users;
+    }
+
+    private void touch(long userId, long friendId) {
+        jdbc.update("UPDATE users SET version = :version WHERE id IN (:userId, :friendId)",
+                new MapSqlParameterSource("version", versions.incrementAndGet())
+                        .addValue("userId", userId)
+                        .addValue("friendId", friendId));
+    }
+
+    private void requireExisting(Long id) {
+        if (!exists(id)) {
+            throw new NotFoundException("Пользователь с ID " + id + " не найден");
+        }
+    }
+
+    /**
+     * Друзья из тела запроса ссылаются на пользователей внешним ключом: неизвестный id — 404, а не ошибка вставки.
+     */
+    private void requireFriends(LongSet friendIds) {
+        if (friendIds.isEmpty()) return;
+        LongSet found = LongSet.copyOf(jdbc.queryForList("SELECT id FROM users WHERE id IN (:ids)",
+                Map.of("ids", new ArrayList<>(friendIds)), Long.class));
+        friendIds.forEachLong(friendId -> {
+            if (!found.contains(friendId)) {
+                throw new NotFoundException("Пользователь с ID " + friendId + " не найден");
+            }
+        });
+    }
+
+    private static MapSqlParameterSource params(User user) {
+        return new MapSqlParameterSource()
+                .addValue("id", user.getId())
+                .addValue("email", user.getEmail())
+                .addValue("login", user.getLogin())
+                .addValue("name", user.getName())
+                .addValue("birthday", user.getBirthday())
+                .addValue("version", user.getVersion());
+    }
+}
@@ -0,0 +1,265 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ShardRing;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пользователи, разбитые по шардам (профиль {@code sharded}): каждый шард — отдельное хранилище в памяти,
+ * шард пользователя выбирается по id через {@link ShardRing}. Id выдаются здесь, чтобы быть сквозными.
+ * <p>
+ * Дружба внутри одного шарда меняется одной фиксацией шарда; дружба между шардами записывается
+ * в каждый шард отдельно под общей блокировкой пары, поэтому снимок одного шарда может увидеть её
+ * с одной стороны. Списки, друзья и общие друзья собираются запросами к нужным шардам.
+ */
+@Component
+@Profile("sharded")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ShardedUserStorage implements UserStorage {
+    private final StripedLock locks = new StripedLock(64);
+    private final AtomicLong nextId = new AtomicLong(1);
+    // Общий счётчик версий шардов: версии сущностей растут сквозь все шарды, как в одном хранилище.
+    private final AtomicLong clock = new AtomicLong();
+    private final List<StorageListener> listeners = new CopyOnWriteArrayList<>();
+    private InMemoryUserStorage[] shards;
+    private ShardRing ring;
+
+    @Value("${filmorate.sharding.shards:4}")
+    private int shardCount;
+
+    @Value("${filmorate.sharding.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @PostConstruct
+    public void start() {
+        ring = new ShardRing(shardCount, virtualNodes);
+        shards = new InMemoryUserStorage[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new InMemoryUserStorage(clock);
+            // Изменения внутри шарда приходят от него самого; создание и межшардовая дружба — отсюда.
+            shards[i].addListener(this::publish);
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public User create(User user) {
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+        long id = nextId.getAndIncrement();
+        locks.lock(id);
+        try {
+            user.setId(id);
+            shard(id).restore(user);
+            publish(new StorageEvent.UserSaved(user));
+        } finally {
+            locks.unlock(id);
+        }
+        return user;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public User update(User user) {
+        locks.lock(user.getId());
+        try {
+            return shard(user.getId()).update(user);
+        } finally {
+            locks.unlock(user.getId());
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void delete(Long id) {
+        locks.lock(id);
+        try {
+            shard(id).delete(id);
+        } finally {
+            locks.unlock(id);
+        }
+    }
+
+    @Override
+    public User getById(Long id) {
+        return id != null ? shard(id).getById(id) : null;
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        return id != null && shard(id).exists(id);
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public Collection<User> findAll() {
+        List<User> result = new ArrayList<>();
+        for (InMemoryUserStorage shard : shards) {
+            result.addAll(shard.findAll());
+        }
+        result.sort(Comparator.comparingLong(User::getId));
+        return result;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public List<User> getByIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (Long id : ids) {
+            if (id != null) byShard.computeIfAbsent(ring.shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Long, User> found = new HashMap<>();
+        byShard.forEach((shard, shardIds) -> {
+            for (User user : shards[shard].getByIds(shardIds)) {
+                found.put(user.getId(), user);
+            }
+        });
+        List<User> result = new ArrayList<>(found.size());
+        for (Long id : ids) {
+            User user = id != null ? found.get(id) : null;
+            if (user != null) result.add(user);
+        }
+        return result;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public List<User> findPage(long afterId, int limit) {
+        // Каждый шард отдаёт свою страницу; общая — первые limit из их объединения.
+        List<User> result = new ArrayList<>();
+        for (InMemoryUserStorage shard : shards) {
+            result.addAll(shard.findPage(afterId, limit));
+        }
+        result.sort(Comparator.comparingLong(User::getId));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void addFriend(Long userId, Long friendId) {
+        if (sameShard(userId, friendId)) {
+            shard(userId).addFriend(userId, friendId);
+            return;
+        }
+        locks.lockBoth(userId, friendId);
+        try {
+            getExisting(userId);
+            getExisting(friendId);
+            boolean changed = shard(userId).link(userId, friendId, true);
+            changed |= shard(friendId).link(friendId, userId, true);
+            if (changed) publish(new StorageEvent.FriendAdded(userId, friendId));
+        } finally {
+            locks.unlockBoth(userId, friendId);
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public void removeFriend(Long userId, Long friendId) {
+        if (sameShard(userId, friendId)) {
+            shard(userId).removeFriend(userId, friendId);
+            return;
+        }
+        locks.lockBoth(userId, friendId);
+        try {
+            getExisting(userId);
+            getExisting(friendId);
+            boolean changed = shard(userId).link(userId, friendId, false);
+            changed |= shard(friendId).link(friendId, userId, false);
+            if (changed) publish(new StorageEvent.FriendRemoved(userId, friendId));
+        } finally {
+            locks.unlockBoth(userId, friendId);
+        }
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public List<User> getFriends(Long userId) {
+        return getByIds(getExisting(userId).getFriends());
+    }
+
+    @Override
+    @Timed("filmorate.storage")
+    public List<User> getCommonFriends(Long userId, Long otherId) {
+        LongSet common = getExisting(userId).getFriends().intersect(getExisting(otherId).getFriends());
+        return getByIds(common);
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (InMemoryUserStorage shard : shards) {
+            count += shard.count();
+        }
+        return count;
+    }
+
+    @Override
+    public long countFriendLinks() {
+        long count = 0;
+        for (InMemoryUserStorage shard : shards) {
+            count += shard.countFriendLinks();
+        }
+        return count;
+    }
+
+    @Override
+    public void restore(User user) {
+        long id = user.getId();
+        locks.lock(id);
+        try {
+            shard(id).restore(user);
+            nextId.accumulateAndGet(id + 1, Math::max);
+        } finally {
+            locks.unlock(id);
+        }
+    }
+
+    @Override
+    public void addListener(StorageListener listener) {
+        listeners.add(listener);
+    }
+
+    private void publish(StorageEvent event) {
+        for (StorageListener listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+
+    private InMemoryUserStorage shard(long id) {
+        return shards[ring.shardOf(id)];
+    }
+
+    private boolean sameShard(Long userId, Long friendId) {
+        return userId == null || friendId == null || ring.shardOf(userId) == ring.shardOf(friendId);
+    }
+
+    private User getExisting(Long id) {
+        User user = getById(id);
+        if (user == null) {
+            throw new NotFoundException("Пользователь с ID " + id + " не найден");
+        }
+        return user;
+    }
+}
@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.event.StorageListener;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface UserStorage {
     User create(User user);
@@ -13,5 +15,54 @@ public interface UserStorage {
 
     User getById(Long id);
 
+    /**
+     * Есть ли пользователь; в отличие от {@link #getById}, не читает список друзей.
+     */
+    boolean exists(Long id);
+
     Collection<User> findAll();
+
+    /**
+     * Пользователи с заданными id в порядке запроса; отсутствующие id пропускаются.
+     */
+    List<User> getByIds(Collection<Long> ids);
+
+    /**
+     * Страница в порядке возрастания id: до {@code limit} записей с id больше {@code afterId}.
+     */
+    List<User> findPage(long afterId, int limit);
+
+    void addFriend(Long userId, Long friendId);
+
+    /**
+     * Друзья пользователя; пользователь должен существовать.
+     */
+    List<User> getFriends(Long userId);
+
+    /**
+     * Общие друзья двух пользователей в порядке возрастания id; пользователи должны существовать.
+     */
+    List<User> getCommonFriends(Long userId, Long otherId);
+
+    void removeFriend(Long userId, Long friendId);
+
+    long count();
+
+    /**
+     * Суммарный размер списков друзей: каждая взаимная дружба учитывается дважды.
+     */
+    long countFriendLinks();
+
+    /**
+     * Сохраняет пользователя с уже назначенным id без проверок и без уведомления слушателей (восстановление данных).
+     */
+    void restore(User user);
+
+    /**
+     * Завершает восстановление после серии {@link #restore}: например, сдвигает счётчик id за восстановленные.
+     */
+    default void finishRestore() {
+    }
+
+    void addListener(StorageListener listener);
 }
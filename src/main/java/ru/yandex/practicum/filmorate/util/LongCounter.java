@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.function.LongPredicate;
+
+/**
+ * Счётчики по ключам {@code long} без упаковки: открытая адресация с линейным пробированием.
+ * Ключи не удаляются — счётчик, опустившийся до нуля, остаётся в таблице и пропускается при выборке.
+ * Не потокобезопасен.
+ */
+public class LongCounter {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    public LongCounter() {
+        this(16);
+    }
+
+    public LongCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Прибавляет {@code delta} к счётчику ключа и возвращает новое значение.
+     */
+    public int add(long key, int delta) {
+        int slot = slot(keys, key);
+        if (keys[slot] == EMPTY) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+                slot = slot(keys, key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        counts[slot] += delta;
+        return counts[slot];
+    }
+
+    public int get(long key) {
+        int slot = slot(keys, key);
+        return keys[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    /**
+     * Число ключей в таблице, включая обнулённые.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Обходит ключи с положительными счётчиками.
+     */
+    public void forEach(EntryConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && counts[i] > 0) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Новый счётчик только с {@code limit} наибольшими значениями: так строки разреженных матриц
+     * удерживаются в заданном размере.
+     */
+    public LongCounter retainTop(int limit) {
+        long[] top = top(limit, key -> false);
+        LongCounter result = new LongCounter(top.length);
+        for (long key : top) {
+            result.add(key, get(key));
+        }
+        return result;
+    }
+
+    /**
+     * До {@code limit} ключей с наибольшими положительными счётчиками (при равенстве — меньший ключ раньше),
+     * кроме отклонённых {@code exclude}. Выборка через кучу размера {@code limit}, без сортировки всей таблицы.
+     */
+    public long[] top(int limit, LongPredicate exclude) {
+        if (limit <= 0) {
+            return new long[0];
+        }
+        PriorityQueue<Entry> heap = new PriorityQueue<>(Math.min(limit, size) + 1);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == EMPTY || counts[i] <= 0) continue;
+            if (heap.size() == limit && !isBetter(keys[i], counts[i], heap.peek())) continue;
+            if (exclude.test(keys[i])) continue;
+            heap.add(new Entry(keys[i], counts[i]));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        long[] result = new long[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll().key();
+        }
+        return result;
+    }
+
+    private static boolean isBetter(long key, int count, Entry worst) {
+        return count > worst.count() || count == worst.count() && key < worst.key();
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int slot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, int count);
+    }
+
+    /**
+     * Элемент кучи: в её вершине худший из отобранных ключей.
+     */
+    private record Entry(long key, int count) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byCount = Integer.compare(count, other.count);
+            return byCount != 0 ? byCount : Long.compare(other.key, key);
+        }
+    }
+}
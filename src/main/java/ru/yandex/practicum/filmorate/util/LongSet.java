@@ -0,0 +1,852 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.LongConsumer;
+
+/**
+ * Компактное множество id без упаковки в {@code Long}.
+ * Небольшие множества хранятся отсортированным массивом, крупные и плотные — постраничной битовой картой.
+ * <p>
+ * База (массив или битовая карта) неизменяема. Изменения дописываются на месте в короткий журнал поверх неё,
+ * и новая ссылка публикуется, только когда меняется раскладка: журнал заполнен и сливается в новую базу
+ * или его ещё нет. Каждое множество видит свой префикс журнала, поэтому {@link #snapshot()} ничего
+ * не копирует: копия и оригинал делят базу и журнал, а дописывать на месте может только тот, чей префикс
+ * последний, — второй при изменении сливает журнал в свою базу.
+ * <p>
+ * Изменения одного множества вызывающий выполняет по очереди (в хранилищах — под блокировкой сущности);
+ * чтение и обход идут без блокировок и видят согласованное состояние на момент начала.
+ */
+public class LongSet extends AbstractSet<Long> {
+    static final int ARRAY_LIMIT = 1024;
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_WORDS = 1 << (PAGE_SHIFT - 6);
+    private static final long PAGE_BYTES = 16 + 8L * PAGE_WORDS;
+    private static final long MIN_DIRECTORY_BYTES = 64 * 1024;
+    // Множества меньше LOG_MIN_SIZE дешевле копировать целиком, журнал им не нужен.
+    private static final int LOG_MIN_SIZE = 64;
+    private static final int LOG_MAX_ENTRIES = 64;
+
+    private volatile Layout layout;
+
+    public LongSet() {
+        this(ArrayState.EMPTY);
+    }
+
+    private LongSet(State base) {
+        this.layout = new Layout(base, null);
+    }
+
+    private LongSet(Layout layout) {
+        this.layout = layout;
+    }
+
+    public static LongSet of(long... values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return new LongSet(fromSorted(distinct(sorted)));
+    }
+
+    /**
+     * Создаёт множество из массива, уже отсортированного по возрастанию и без повторов (массив не копируется).
+     */
+    public static LongSet ofSorted(long[] sortedDistinct) {
+        return new LongSet(fromSorted(sortedDistinct));
+    }
+
+    public static LongSet copyOf(Collection<Long> values) {
+        if (values instanceof LongSet set) {
+            return set.snapshot();
+        }
+        long[] sorted = values.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        return new LongSet(fromSorted(sorted));
+    }
+
+    public boolean add(long value) {
+        return change(value, false);
+    }
+
+    public boolean remove(long value) {
+        return change(value, true);
+    }
+
+    public boolean contains(long value) {
+        return view().contains(value);
+    }
+
+    /**
+     * Добавляет и удаляет группу значений. Множества добавляемых и удаляемых значений не должны пересекаться.
+     * Небольшая группа дописывается в журнал, крупная сливается с базой за один проход.
+     */
+    public void update(LongSet additions, LongSet removals) {
+        View adds = additions.view();
+        View removes = removals.view();
+        View current = view();
+        if ((long) (adds.size() + removes.size()) * 64 < current.size()) {
+            adds.forEach(value -> change(value, false));
+            removes.forEach(value -> change(value, true));
+        } else {
+            layout = new Layout(fromSorted(mergeUpdate(current, adds, removes)), null);
+        }
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long value && contains(value.longValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Long value && remove(value.longValue());
+    }
+
+    @Override
+    public void clear() {
+        layout = new Layout(ArrayState.EMPTY, null);
+    }
+
+    @Override
+    public int size() {
+        return view().size();
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return view().iterator();
+    }
+
+    public void forEachLong(LongConsumer action) {
+        view().forEach(action);
+    }
+
+    public long[] toLongArray() {
+        return view().toArray();
+    }
+
+    /**
+     * Пересечение двух множеств. Обходится меньшее множество, а в большем выполняется поиск;
+     * две битовые карты без журнала пересекаются пословно.
+     */
+    public LongSet intersect(LongSet other) {
+        View a = view();
+        View b = other.view();
+        if (a.length == 0 && b.length == 0 && a.base instanceof BitmapState x && b.base instanceof BitmapState y) {
+            return new LongSet(x.and(y));
+        }
+        View small = a.size() <= b.size() ? a : b;
+        View large = small == a ? b : a;
+        long[] result = new long[small.size()];
+        int n = 0;
+        if (small.length == 0 && large.length == 0 && small.base instanceof ArrayState x
+                && large.base instanceof ArrayState y && y.values.length < 8L * x.values.length) {
+            n = merge(x.values, y.values, result);
+        } else {
+            PrimitiveIterator.OfLong iterator = small.iterator();
+            while (iterator.hasNext()) {
+                long value = iterator.nextLong();
+                if (large.contains(value)) {
+                    result[n++] = value;
+                }
+            }
+        }
+        return new LongSet(fromSorted(n == result.length ? result : Arrays.copyOf(result, n)));
+    }
+
+    /**
+     * Размер пересечения без построения результирующего множества.
+     */
+    public int intersectionSize(LongSet other) {
+        View a = view();
+        View b = other.view();
+        if (a.length == 0 && b.length == 0 && a.base instanceof BitmapState x && b.base instanceof BitmapState y) {
+            return x.andCount(y);
+        }
+        View small = a.size() <= b.size() ? a : b;
+        View large = small == a ? b : a;
+        if (small.length == 0 && large.length == 0 && small.base instanceof ArrayState x
+                && large.base instanceof ArrayState y && y.values.length < 8L * x.values.length) {
+            return merge(x.values, y.values, null);
+        }
+        int count = 0;
+        PrimitiveIterator.OfLong iterator = small.iterator();
+        while (iterator.hasNext()) {
+            if (large.contains(iterator.nextLong())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Независимая копия на текущий момент; стоимость O(1): копия делит с оригиналом базу и журнал.
+     */
+    public LongSet snapshot() {
+        Layout current = layout;
+        Layout copy = new Layout(current.base, current.log);
+        copy.length = current.length;
+        return new LongSet(copy);
+    }
+
+    /**
+     * Приблизительный объём памяти, занимаемый содержимым множества, в байтах.
+     */
+    public long estimatedBytes() {
+        Layout current = layout;
+        return current.base.bytes() + (current.log != null ? current.log.bytes() : 0);
+    }
+
+    private View view() {
+        Layout current = layout;
+        return new View(current.base, current.log, current.length);
+    }
+
+    /**
+     * Добавление ({@code removal == false}) или удаление значения. В журнал пишутся только настоящие изменения,
+     * поэтому каждая запись в нём переключает принадлежность значения.
+     */
+    private boolean change(long value, boolean removal) {
+        Layout current = layout;
+        int length = current.length;
+        View view = new View(current.base, current.log, length);
+        if (view.contains(value) != removal) {
+            return false;
+        }
+        Log log = current.log;
+        if (log != null && log.claim(length)) {
+            log.values[length] = value;
+            log.removals[length] = removal;
+            current.length = length + 1;
+        } else if (log == null && length == 0 && logCapacity(current.base.size()) > 0) {
+            Layout next = new Layout(current.base, new Log(logCapacity(current.base.size())));
+            next.log.claim(0);
+            next.log.values[0] = value;
+            next.log.removals[0] = removal;
+            next.length = 1;
+            layout = next;
+        } else {
+            layout = new Layout(view.compact(value, removal), null);
+        }
+        return true;
+    }
+
+    private static int logCapacity(int size) {
+        return size < LOG_MIN_SIZE ? 0 : Math.min(LOG_MAX_ENTRIES, size >> 4);
+    }
+
+    private static State fromSorted(long[] sorted) {
+        if (sorted.length > ARRAY_LIMIT && sorted[0] >= 0 && bitmapBytes(sorted) < ArrayState.bytes(sorted.length)) {
+            return BitmapState.fromSorted(sorted);
+        }
+        return sorted.length == 0 ? ArrayState.EMPTY : new ArrayState(sorted);
+    }
+
+    private static long bitmapBytes(long[] sorted) {
+        long pages = 0;
+        long lastPage = -1;
+        for (long value : sorted) {
+            long page = value >>> PAGE_SHIFT;
+            if (page != lastPage) {
+                pages++;
+                lastPage = page;
+            }
+        }
+        return 24 + 16 + 8 * (lastPage + 1) + pages * PAGE_BYTES;
+    }
+
+    private static long[] mergeUpdate(View current, View adds, View removes) {
+        long[] result = new long[current.size() + adds.size()];
+        int n = 0;
+        PrimitiveIterator.OfLong left = current.iterator();
+        PrimitiveIterator.OfLong right = adds.iterator();
+        long a = left.hasNext() ? left.nextLong() : Long.MAX_VALUE;
+        boolean hasA = current.size() > 0;
+        long b = right.hasNext() ? right.nextLong() : Long.MAX_VALUE;
+        boolean hasB = adds.size() > 0;
+        while (hasA || hasB) {
+            long value;
+            if (hasA && (!hasB || a <= b)) {
+                value = a;
+                if (hasB && a == b) {
+                    hasB = right.hasNext();
+                    b = hasB ? right.nextLong() : Long.MAX_VALUE;
+                }
+                hasA = left.hasNext();
+                a = hasA ? left.nextLong() : Long.MAX_VALUE;
+            } else {
+                value = b;
+                hasB = right.hasNext();
+                b = hasB ? right.nextLong() : Long.MAX_VALUE;
+            }
+            if (!removes.contains(value)) {
+                result[n++] = value;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    private static int merge(long[] a, long[] b, long[] result) {
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                if (result != null) {
+                    result[n] = a[i];
+                }
+                n++;
+                i++;
+                j++;
+            }
+        }
+        return n;
+    }
+
+    private static long[] distinct(long[] sorted) {
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[n - 1]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+    }
+
+    /**
+     * Раскладка множества: база, журнал и длина видимого этому множеству префикса журнала.
+     */
+    private static final class Layout {
+        final State base;
+        final Log log;
+        volatile int length;
+
+        Layout(State base, Log log) {
+            this.base = base;
+            this.log = log;
+        }
+    }
+
+    /**
+     * Журнал изменений поверх базы, общий для множества и его копий. Запись в ячейку {@code i} достаётся тому,
+     * кто первым занял её в {@link #claim}, поэтому уже видимый кому-то префикс не переписывается.
+     */
+    private static final class Log {
+        private static final AtomicIntegerFieldUpdater<Log> CLAIMED =
+                AtomicIntegerFieldUpdater.newUpdater(Log.class, "claimed");
+
+        final long[] values;
+        final boolean[] removals;
+        private volatile int claimed;
+
+        Log(int capacity) {
+            values = new long[capacity];
+            removals = new boolean[capacity];
+        }
+
+        boolean claim(int index) {
+            return index < values.length && CLAIMED.compareAndSet(this, index, index + 1);
+        }
+
+        long bytes() {
+            return 16 + 16 + 8L * values.length + 16 + removals.length;
+        }
+    }
+
+    /**
+     * Состояние множества на момент чтения: база и первые {@code length} записей журнала.
+     */
+    private record View(State base, Log log, int length) {
+
+        boolean contains(long value) {
+            for (int i = length - 1; i >= 0; i--) {
+                if (log.values[i] == value) {
+                    return !log.removals[i];
+                }
+            }
+            return base.contains(value);
+        }
+
+        int size() {
+            int size = base.size();
+            for (int i = 0; i < length; i++) {
+                size += log.removals[i] ? -1 : 1;
+            }
+            return size;
+        }
+
+        PrimitiveIterator.OfLong iterator() {
+            return length == 0 ? base.iterator() : new MergingIterator(base.iterator(), delta(Long.MIN_VALUE, false));
+        }
+
+        void forEach(LongConsumer action) {
+            PrimitiveIterator.OfLong iterator = iterator();
+            while (iterator.hasNext()) {
+                action.accept(iterator.nextLong());
+            }
+        }
+
+        long[] toArray() {
+            long[] result = new long[size()];
+            PrimitiveIterator.OfLong iterator = iterator();
+            for (int i = 0; i < result.length; i++) {
+                result[i] = iterator.nextLong();
+            }
+            return result;
+        }
+
+        /**
+         * Новая база: журнал и ещё одно изменение {@code value} слиты с текущей базой.
+         */
+        State compact(long value, boolean removal) {
+            if (length == 0) {
+                return removal ? base.remove(value) : base.add(value);
+            }
+            Delta delta = delta(value, true);
+            State next = base instanceof BitmapState bitmap ? bitmap.apply(delta) : null;
+            if (next != null) {
+                return next;
+            }
+            long[] values = new long[base.size() + delta.added.length - delta.removed.length];
+            PrimitiveIterator.OfLong iterator = new MergingIterator(base.iterator(), delta);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = iterator.nextLong();
+            }
+            return fromSorted(values);
+        }
+
+        /**
+         * Чистое изменение относительно базы. Каждая запись журнала переключает значение, поэтому значение
+         * изменено, если встречается нечётное число раз: добавлено, если его нет в базе, иначе удалено.
+         */
+        private Delta delta(long extra, boolean withExtra) {
+            long[] toggled = Arrays.copyOf(log != null ? log.values : new long[0], length + (withExtra ? 1 : 0));
+            if (withExtra) {
+                toggled[length] = extra;
+            }
+            Arrays.sort(toggled);
+            long[] added = new long[toggled.length];
+            long[] removed = new long[toggled.length];
+            int a = 0;
+            int r = 0;
+            int i = 0;
+            while (i < toggled.length) {
+                int j = i;
+                while (j < toggled.length && toggled[j] == toggled[i]) {
+                    j++;
+                }
+                if ((j - i) % 2 == 1) {
+                    if (base.contains(toggled[i])) {
+                        removed[r++] = toggled[i];
+                    } else {
+                        added[a++] = toggled[i];
+                    }
+                }
+                i = j;
+            }
+            return new Delta(Arrays.copyOf(added, a), Arrays.copyOf(removed, r));
+        }
+    }
+
+    /**
+     * Отсортированные значения, добавленные к базе и удалённые из неё.
+     */
+    private record Delta(long[] added, long[] removed) {
+    }
+
+    /**
+     * Обход базы без {@code removed} вперемешку с {@code added} по возрастанию.
+     */
+    private static final class MergingIterator implements PrimitiveIterator.OfLong {
+        private final PrimitiveIterator.OfLong source;
+        private final long[] added;
+        private final long[] removed;
+        private int nextAdded;
+        private int nextRemoved;
+        private long baseValue;
+        private boolean hasBase;
+
+        MergingIterator(PrimitiveIterator.OfLong source, Delta delta) {
+            this.source = source;
+            this.added = delta.added;
+            this.removed = delta.removed;
+            hasBase = advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasBase || nextAdded < added.length;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (nextAdded < added.length && (!hasBase || added[nextAdded] < baseValue)) {
+                return added[nextAdded++];
+            }
+            long value = baseValue;
+            hasBase = advance();
+            return value;
+        }
+
+        private boolean advance() {
+            while (source.hasNext()) {
+                long value = source.nextLong();
+                while (nextRemoved < removed.length && removed[nextRemoved] < value) {
+                    nextRemoved++;
+                }
+                if (nextRemoved < removed.length && removed[nextRemoved] == value) {
+                    nextRemoved++;
+                    continue;
+                }
+                baseValue = value;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private abstract static class State {
+        abstract int size();
+
+        abstract boolean contains(long value);
+
+        abstract State add(long value);
+
+        abstract State remove(long value);
+
+        abstract PrimitiveIterator.OfLong iterator();
+
+        abstract long bytes();
+    }
+
+    private static final class ArrayState extends State {
+        static final ArrayState EMPTY = new ArrayState(new long[0]);
+
+        final long[] values;
+
+        ArrayState(long[] values) {
+            this.values = values;
+        }
+
+        static long bytes(int length) {
+            return 16 + 16 + 8L * length;
+        }
+
+        @Override
+        int size() {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(long value) {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        @Override
+        State add(long value) {
+            int index = Arrays.binarySearch(values, value);
+            if (index >= 0) {
+                return this;
+            }
+            int insertAt = -index - 1;
+            long[] next = new long[values.length + 1];
+            System.arraycopy(values, 0, next, 0, insertAt);
+            next[insertAt] = value;
+            System.arraycopy(values, insertAt, next, insertAt + 1, values.length - insertAt);
+            return next.length > ARRAY_LIMIT ? fromSorted(next) : new ArrayState(next);
+        }
+
+        @Override
+        State remove(long value) {
+            int index = Arrays.binarySearch(values, value);
+            if (index < 0) {
+                return this;
+            }
+            if (values.length == 1) {
+                return EMPTY;
+            }
+            long[] next = new long[values.length - 1];
+            System.arraycopy(values, 0, next, 0, index);
+            System.arraycopy(values, index + 1, next, index, values.length - index - 1);
+            return new ArrayState(next);
+        }
+
+        @Override
+        PrimitiveIterator.OfLong iterator() {
+            return new PrimitiveIterator.OfLong() {
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    return position < values.length;
+                }
+
+                @Override
+                public long nextLong() {
+                    if (position >= values.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return values[position++];
+                }
+            };
+        }
+
+        @Override
+        long bytes() {
+            return bytes(values.length);
+        }
+    }
+
+    private static final class BitmapState extends State {
+        final long[][] pages;
+        final int size;
+        final int usedPages;
+
+        BitmapState(long[][] pages, int size, int usedPages) {
+            this.pages = pages;
+            this.size = size;
+            this.usedPages = usedPages;
+        }
+
+        static BitmapState fromSorted(long[] sorted) {
+            long[][] pages = new long[(int) (sorted[sorted.length - 1] >>> PAGE_SHIFT) + 1][];
+            int usedPages = 0;
+            for (long value : sorted) {
+                int page = (int) (value >>> PAGE_SHIFT);
+                if (pages[page] == null) {
+                    pages[page] = new long[PAGE_WORDS];
+                    usedPages++;
+                }
+                pages[page][word(value)] |= 1L << value;
+            }
+            return new BitmapState(pages, sorted.length, usedPages);
+        }
+
+        static int word(long value) {
+            return (int) (value >>> 6) & (PAGE_WORDS - 1);
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        boolean contains(long value) {
+            if (value < 0) {
+                return false;
+            }
+            long page = value >>> PAGE_SHIFT;
+            if (page >= pages.length || pages[(int) page] == null) {
+                return false;
+            }
+            return (pages[(int) page][word(value)] & (1L << value)) != 0;
+        }
+
+        @Override
+        State add(long value) {
+            if (contains(value)) {
+                return this;
+            }
+            long page = value >>> PAGE_SHIFT;
+            long directoryBytes = 8 * (Math.max(page + 1, pages.length));
+            if (value < 0 || directoryBytes > Math.max(MIN_DIRECTORY_BYTES, ArrayState.bytes(size + 1))) {
+                return toArray().add(value);
+            }
+            long[][] nextPages = Arrays.copyOf(pages, (int) Math.max(page + 1, pages.length));
+            long[] current = nextPages[(int) page];
+            long[] nextPage = current == null ? new long[PAGE_WORDS] : current.clone();
+            nextPage[word(value)] |= 1L << value;
+            nextPages[(int) page] = nextPage;
+            BitmapState next = new BitmapState(nextPages, size + 1, current == null ? usedPages + 1 : usedPages);
+            return next.bytes() > 2 * ArrayState.bytes(next.size) ? next.toArray() : next;
+        }
+
+        @Override
+        State remove(long value) {
+            if (!contains(value)) {
+                return this;
+            }
+            int page = (int) (value >>> PAGE_SHIFT);
+            long[][] nextPages = pages.clone();
+            long[] nextPage = pages[page].clone();
+            nextPage[word(value)] &= ~(1L << value);
+            boolean emptied = isEmpty(nextPage);
+            nextPages[page] = emptied ? null : nextPage;
+            BitmapState next = new BitmapState(nextPages, size - 1, emptied ? usedPages - 1 : usedPages);
+            return next.size < ARRAY_LIMIT / 2 ? next.toArray() : next;
+        }
+
+        @Override
+        PrimitiveIterator.OfLong iterator() {
+            return new PrimitiveIterator.OfLong() {
+                private int page = -1;
+                private int word = PAGE_WORDS;
+                private long bits;
+
+                @Override
+                public boolean hasNext() {
+                    while (bits == 0) {
+                        if (page >= pages.length) {
+                            return false;
+                        }
+                        if (++word >= PAGE_WORDS) {
+                            do {
+                                page++;
+                            } while (page < pages.length && pages[page] == null);
+                            if (page >= pages.length) {
+                                return false;
+                            }
+                            word = 0;
+                        }
+                        bits = pages[page][word];
+                    }
+                    return true;
+                }
+
+                @Override
+                public long nextLong() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int bit = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    return ((long) page << PAGE_SHIFT) | ((long) word << 6) | bit;
+                }
+            };
+        }
+
+        @Override
+        long bytes() {
+            return 24 + 16 + 8L * pages.length + usedPages * PAGE_BYTES;
+        }
+
+        State and(BitmapState other) {
+            int length = Math.min(pages.length, other.pages.length);
+            long[][] result = new long[length][];
+            int count = 0;
+            int used = 0;
+            for (int p = 0; p < length; p++) {
+                long[] a = pages[p];
+                long[] b = other.pages[p];
+                if (a == null || b == null) {
+                    continue;
+                }
+                long[] page = new long[PAGE_WORDS];
+                int pageCount = 0;
+                for (int w = 0; w < PAGE_WORDS; w++) {
+                    page[w] = a[w] & b[w];
+                    pageCount += Long.bitCount(page[w]);
+                }
+                if (pageCount > 0) {
+                    result[p] = page;
+                    count += pageCount;
+                    used++;
+                }
+            }
+            BitmapState bitmap = new BitmapState(result, count, used);
+            return count < ARRAY_LIMIT / 2 || bitmap.bytes() > 2 * ArrayState.bytes(count) ? bitmap.toArray() : bitmap;
+        }
+
+        int andCount(BitmapState other) {
+            int length = Math.min(pages.length, other.pages.length);
+            int count = 0;
+            for (int p = 0; p < length; p++) {
+                long[] a = pages[p];
+                long[] b = other.pages[p];
+                if (a == null || b == null) {
+                    continue;
+                }
+                for (int w = 0; w < PAGE_WORDS; w++) {
+                    count += Long.bitCount(a[w] & b[w]);
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Карта с изменениями {@code delta}: копируются каталог и только затронутые страницы.
+         * {@code null}, если результат битовой картой не хранится.
+         */
+        State apply(Delta delta) {
+            long lastPage = pages.length - 1;
+            for (long value : delta.added()) {
+                if (value < 0) {
+                    return null;
+                }
+                lastPage = Math.max(lastPage, value >>> PAGE_SHIFT);
+            }
+            int nextSize = size + delta.added().length - delta.removed().length;
+            if (8 * (lastPage + 1) > Math.max(MIN_DIRECTORY_BYTES, ArrayState.bytes(nextSize))) {
+                return null;
+            }
+            long[][] nextPages = Arrays.copyOf(pages, (int) lastPage + 1);
+            int used = usedPages;
+            for (long value : delta.added()) {
+                int page = (int) (value >>> PAGE_SHIFT);
+                long[] target = writable(nextPages, page);
+                if (target == null) {
+                    target = new long[PAGE_WORDS];
+                    nextPages[page] = target;
+                    used++;
+                }
+                target[word(value)] |= 1L << value;
+            }
+            for (long value : delta.removed()) {
+                int page = (int) (value >>> PAGE_SHIFT);
+                long[] target = writable(nextPages, page);
+                target[word(value)] &= ~(1L << value);
+                if (isEmpty(target)) {
+                    nextPages[page] = null;
+                    used--;
+                }
+            }
+            BitmapState next = new BitmapState(nextPages, nextSize, used);
+            return next.size < ARRAY_LIMIT / 2 || next.bytes() > 2 * ArrayState.bytes(next.size) ? next.toArray() : next;
+        }
+
+        /**
+         * Страница {@code page} новой карты, которую можно менять: общая с этой картой копируется один раз.
+         */
+        private long[] writable(long[][] nextPages, int page) {
+            long[] current = nextPages[page];
+            if (current != null && page < pages.length && current == pages[page]) {
+                current = current.clone();
+                nextPages[page] = current;
+            }
+            return current;
+        }
+
+        private ArrayState toArray() {
+            long[] values = new long[size];
+            PrimitiveIterator.OfLong iterator = iterator();
+            for (int i = 0; i < values.length; i++) {
+                values[i] = iterator.nextLong();
+            }
+            return new ArrayState(values);
+        }
+
+        private static boolean isEmpty(long[] page) {
+            for (long word : page) {
+                if (word != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
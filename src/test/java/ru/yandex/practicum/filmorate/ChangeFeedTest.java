@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ChangeFeed;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeFeedTest {
+
+    @Test
+    void read_shouldReturnEventsInOrderAfterOffset() {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        UserStorage userStorage = new InMemoryUserStorage();
+        ChangeFeed feed = feed(filmStorage, userStorage, 64);
+
+        userStorage.create(user(1));
+        userStorage.create(user(2));
+        userStorage.addFriend(1L, 2L);
+        filmStorage.create(film());
+        filmStorage.addLike(1L, 1L);
+        filmStorage.removeLike(1L, 1L);
+        userStorage.removeFriend(1L, 2L);
+
+        ChangeFeed.Batch all = feed.read(0, 100);
+        assertFalse(all.gap());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L), all.entries().stream().map(ChangeFeed.Entry::offset).toList());
+        assertEquals(new StorageEvent.FriendAdded(1, 2), all.entries().get(2).event());
+        assertEquals(new StorageEvent.LikeAdded(1, 1), all.entries().get(4).event());
+        assertEquals(new StorageEvent.FriendRemoved(1, 2), all.entries().get(6).event());
+
+        ChangeFeed.Batch resumed = feed.read(5, 1);
+        assertEquals(List.of(new StorageEvent.LikeRemoved(1, 1)),
+                resumed.entries().stream().map(ChangeFeed.Entry::event).toList());
+        assertTrue(feed.read(7, 100).entries().isEmpty());
+    }
+
+    @Test
+    void laggingReader_shouldSeeGapWithoutBlockingWriters() {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        ChangeFeed feed = feed(filmStorage, new InMemoryUserStorage(), 8);
+        filmStorage.create(film());
+
+        for (long userId = 1; userId <= 100; userId++) {
+            filmStorage.addLike(1L, userId);
+        }
+
+        ChangeFeed.Batch batch = feed.read(0, 100);
+        assertTrue(batch.gap());
+        assertEquals(94L, batch.entries().get(0).offset());
+        assertEquals(101L, batch.entries().get(batch.entries().size() - 1).offset());
+        assertFalse(feed.read(101, 100).gap());
+    }
+
+    @Test
+    void offsetFromPreviousRun_shouldBeReportedAsGap() {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        ChangeFeed feed = feed(filmStorage, new InMemoryUserStorage(), 64);
+        filmStorage.create(film());
+        filmStorage.addLike(1L, 1L);
+
+        // Клиент помнит номер 500 прежнего запуска, а новая лента дошла только до 2.
+        ChangeFeed.Batch batch = feed.read(500, 100);
+        assertTrue(batch.gap());
+        assertEquals(List.of(1L, 2L), batch.entries().stream().map(ChangeFeed.Entry::offset).toList());
+        assertTrue(feed.read(Long.MAX_VALUE, 100).gap());
+    }
+
+    @Test
+    void await_shouldWakeOnNewEvent() throws Exception {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        ChangeFeed feed = feed(filmStorage, new InMemoryUserStorage(), 8);
+        CompletableFuture<Long> waited = CompletableFuture.supplyAsync(() -> {
+            long started = System.nanoTime();
+            try {
+                feed.await(0, 10_000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        });
+        Thread.sleep(50);
+        filmStorage.create(film());
+
+        assertTrue(waited.get(5, TimeUnit.SECONDS) < 5_000);
+        assertEquals(1, feed.read(0, 10).entries().size());
+    }
+
+    private static ChangeFeed feed(FilmStorage filmStorage, UserStorage userStorage, int capacity) {
+        ChangeFeed feed = new ChangeFeed(filmStorage, userStorage);
+        ReflectionTestUtils.setField(feed, "capacity", capacity);
+        feed.init();
+        feed.start();
+        return feed;
+    }
+
+    private static Film film() {
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(90);
+        return film;
+    }
+
+    private static User user(int i) {
+        User user = new User();
+        user.setEmail("user" + i + "@yandex.ru");
+        user.setLogin("user" + i);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+}
@@ -1,31 +1,49 @@
 package ru.yandex.practicum.filmorate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.PopularResponseCache;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.io.ByteArrayInputStream;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 
-@SpringBootTest
+// Кэш популярных без допуска устаревания: тесты проверяют ответ сразу после изменения.
+@SpringBootTest(properties = "popular.cache.max-stale-ms=0")
 @AutoConfigureMockMvc
 public class FilmControllerTest {
 
@@ -47,6 +65,9 @@ public class FilmControllerTest {
     @Autowired
     private UserStorage userStorage;
 
+    @Autowired
+    private PopularResponseCache popularResponseCache;
+
     @BeforeEach
     void clearData() {
         List<Long> filmIds = filmService.findAll().stream()
@@ -151,6 +172,26 @@ public class FilmControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void whenCreatingFilm_shouldFailOnReleaseDateBeforeCinema() throws Exception {
+        Film notValidFilm = new Film();
+        notValidFilm.setName("film");
+        notValidFilm.setDescription("description");
+        notValidFilm.setReleaseDate(LocalDate.of(1895, 12, 27));
+        notValidFilm.setDuration(70);
+
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(notValidFilm)))
+                .andExpect(status().isBadRequest());
+
+        notValidFilm.setReleaseDate(LocalDate.of(1895, 12, 28));
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(notValidFilm)))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void whenCreatingFilm_shouldFailOnEmptyRequest() throws Exception {
         mockMvc.perform(post("/films")
@@ -358,4 +399,494 @@ public class FilmControllerTest {
         mockMvc.perform(delete("/films/{id}/like/{userId}", 1L, 999L))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    @Test
+    void popularFilms_shouldMatchFullSortByLikes() {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@yandex.ru");
+            user.setLogin("user" + i);
+            user.setBirthday(LocalDate.of(2000, 1, 1));
+            userIds.add(userService.create(user).getId());
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 30; i++) {
+            Film film = new Film();
+            film.setName("film" + i);
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2007, 7, 7));
+            film.setDuration(70);
+            Long filmId = filmService.create(film).getId();
+            for (Long userId : userIds) {
+                if (random.nextInt(3) == 0) filmService.addLike(filmId, userId);
+            }
+            if (random.nextBoolean()) filmService.removeLike(filmId, userIds.get(random.nextInt(userIds.size())));
+        }
+
+        for (int count : new int[]{1, 5, 30, 100}) {
+            List<Long> expected = filmService.findAll().stream()
+                    .sorted(Comparator.comparingInt((Film f) -> -f.getLikes().size())
+                            .thenComparing(Film::getId))
+                    .limit(count)
+                    .map(Film::getId)
+                    .collect(Collectors.toList());
+            List<Long> actual = filmService.getPopular(count).stream()
+                    .map(Film::getId)
+                    .collect(Collectors.toList());
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void shouldApplyLikesBatch() throws Exception {
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2007, 7, 7));
+        film.setDuration(70);
+        Long filmId = filmService.create(film).getId();
+
+        User user1 = new User();
+        user1.setEmail("user1@yandex.ru");
+        user1.setLogin("user1");
+        user1.setBirthday(LocalDate.of(2000, 1, 1));
+        Long userId1 = userService.create(user1).getId();
+
+        User user2 = new User();
+        user2.setEmail("user2@yandex.ru");
+        user2.setLogin("user2");
+        user2.setBirthday(LocalDate.of(2000, 1, 1));
+        Long userId2 = userService.create(user2).getId();
+
+        String body = "[" +
+                "{\"filmId\":" + filmId + ",\"userId\":" + userId1 + ",\"op\":\"ADD\"}," +
+                "{\"filmId\":" + filmId + ",\"userId\":" + userId2 + ",\"op\":\"ADD\"}," +
+                "{\"filmId\":" + filmId + ",\"userId\":" + userId2 + ",\"op\":\"REMOVE\"}," +
+                "{\"filmId\":" + filmId + ",\"userId\":999,\"op\":\"ADD\"}," +
+                "{\"filmId\":999,\"userId\":" + userId1 + ",\"op\":\"ADD\"}," +
+                "{\"filmId\":" + filmId + ",\"op\":\"ADD\"}" +
+                "]";
+
+        mockMvc.perform(post("/films/likes/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(6))
+                .andExpect(jsonPath("[0].status").value("OK"))
+                .andExpect(jsonPath("[1].status").value("OK"))
+                .andExpect(jsonPath("[2].status").value("OK"))
+                .andExpect(jsonPath("[3].status").value("USER_NOT_FOUND"))
+                .andExpect(jsonPath("[4].status").value("FILM_NOT_FOUND"))
+                .andExpect(jsonPath("[5].status").value("INVALID"));
+
+        assertEquals(List.of(userId1), new ArrayList<>(filmService.getById(filmId).getLikes()));
+    }
+
+    @Test
+    void shouldReturnFilmsPageByCursor() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Film film = new Film();
+            film.setName("film" + i);
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2007, 7, 7));
+            film.setDuration(70);
+            ids.add(filmService.create(film).getId());
+        }
+
+        mockMvc.perform(get("/films").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("[0].id").value(ids.get(0)))
+                .andExpect(jsonPath("[1].id").value(ids.get(1)));
+
+        mockMvc.perform(get("/films").param("after", ids.get(1).toString()).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("[0].id").value(ids.get(2)))
+                .andExpect(jsonPath("[1].id").value(ids.get(3)));
+
+        mockMvc.perform(get("/films").param("after", ids.get(4).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        mockMvc.perform(get("/films").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldStreamFilmsAsNdjson() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 1_200; i++) {
+            Film film = new Film();
+            film.setName("film" + i);
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2007, 7, 7));
+            film.setDuration(70);
+            ids.add(filmService.create(film).getId());
+        }
+
+        MvcResult result = mockMvc.perform(get("/films").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(ids.size(), lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(ids.get(i), objectMapper.readValue(lines[i], Film.class).getId());
+        }
+    }
+
+    @Test
+    void shouldAnswerNotModifiedUntilFilmOrRankingChanges() throws Exception {
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2007, 7, 7));
+        film.setDuration(70);
+        Long filmId = filmService.create(film).getId();
+
+        User user = new User();
+        user.setEmail("user@yandex.ru");
+        user.setLogin("user");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        Long userId = userService.create(user).getId();
+
+        String filmTag = mockMvc.perform(get("/films/" + filmId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        String popularTag = mockMvc.perform(get("/films/popular"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/films/" + filmId).header("If-None-Match", filmTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/films/popular").header("If-None-Match", popularTag))
+                .andExpect(status().isNotModified());
+
+        filmService.addLike(filmId, userId);
+
+        mockMvc.perform(get("/films/" + filmId).header("If-None-Match", filmTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likes[0]").value(userId));
+        mockMvc.perform(get("/films/popular").header("If-None-Match", popularTag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void similarAndRecommendedFilms_shouldFollowCoLikes() throws Exception {
+        List<Long> films = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Film film = new Film();
+            film.setName("similar " + i);
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2007, 7, 7));
+            film.setDuration(70);
+            films.add(filmService.create(film).getId());
+        }
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            User user = new User();
+            user.setEmail("similar" + i + "@yandex.ru");
+            user.setLogin("similar" + i);
+            user.setBirthday(LocalDate.of(2000, 1, 1));
+            users.add(userService.create(user).getId());
+        }
+        filmService.addLike(films.get(0), users.get(0));
+        filmService.addLike(films.get(1), users.get(0));
+        filmService.addLike(films.get(0), users.get(1));
+        filmService.addLike(films.get(2), users.get(1));
+
+        mockMvc.perform(get("/films/" + films.get(1) + "/similar"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("[0].id").value(films.get(0)));
+
+        mockMvc.perform(get("/users/" + users.get(0) + "/recommended-films"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("[0].id").value(films.get(2)));
+
+        mockMvc.perform(get("/films/" + films.get(1) + "/similar?count=101"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void popularByReleaseDate_shouldMatchFilteredSort() throws Exception {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            User user = new User();
+            user.setEmail("year" + i + "@yandex.ru");
+            user.setLogin("year" + i);
+            user.setBirthday(LocalDate.of(2000, 1, 1));
+            userIds.add(userService.create(user).getId());
+        }
+
+        Random random = new Random(16);
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Film film = new Film();
+            film.setName("film" + i);
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2000 + random.nextInt(5), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+            film.setDuration(70);
+            Long filmId = filmService.create(film).getId();
+            filmIds.add(filmId);
+            for (Long userId : userIds) {
+                if (random.nextInt(3) == 0) filmService.addLike(filmId, userId);
+            }
+        }
+        // Смена года переносит фильм в другую корзину, удаление убирает из неё.
+        Film moved = filmService.getById(filmIds.get(0));
+        moved.setReleaseDate(LocalDate.of(2010, 5, 5));
+        filmService.update(moved);
+        filmStorage.delete(filmIds.get(1));
+
+        LocalDate[][] ranges = {
+                new LocalDate[]{LocalDate.of(2002, 1, 1), LocalDate.of(2002, 12, 31)},
+                new LocalDate[]{LocalDate.of(2001, 6, 15), LocalDate.of(2003, 2, 10)},
+                new LocalDate[]{null, LocalDate.of(2001, 3, 1)},
+                new LocalDate[]{LocalDate.of(2004, 7, 1), null},
+                new LocalDate[]{LocalDate.of(2010, 1, 1), null}
+        };
+        for (LocalDate[] range : ranges) {
+            for (int count : new int[]{1, 5, 100}) {
+                List<Long> expected = filmService.findAll().stream()
+                        .filter(f -> range[0] == null || !f.getReleaseDate().isBefore(range[0]))
+                        .filter(f -> range[1] == null || !f.getReleaseDate().isAfter(range[1]))
+                        .sorted(Comparator.comparingInt((Film f) -> -f.getLikes().size())
+                                .thenComparing(Film::getId))
+                        .limit(count)
+                        .map(Film::getId)
+                        .collect(Collectors.toList());
+                List<Long> actual = filmService.getPopular(count, null, range[0], range[1]).stream()
+                        .map(Film::getId)
+                        .collect(Collectors.toList());
+                assertEquals(expected, actual);
+            }
+        }
+
+        Long top2002 = filmService.getPopular(1, 2002, null, null).iterator().next().getId();
+        mockMvc.perform(get("/films/popular?count=1&year=2002"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].id").value(top2002));
+        mockMvc.perform(get("/films/popular?year=2010"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("[0].id").value(filmIds.get(0)));
+        mockMvc.perform(get("/films/popular?from=2001-01-01&to=2000-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/films/popular?year=1000000000"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular?from=1800-01-01"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular?to=%2B10000-01-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void trending_shouldReturnRecentlyLikedFilms() throws Exception {
+        Film film = new Film();
+        film.setName("trending");
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2007, 7, 7));
+        film.setDuration(70);
+        Long filmId = filmService.create(film).getId();
+
+        User user = new User();
+        user.setEmail("trending@yandex.ru");
+        user.setLogin("trending");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        filmService.addLike(filmId, userService.create(user).getId());
+
+        mockMvc.perform(get("/films/trending?window=1h"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].id").value(filmId));
+        mockMvc.perform(get("/films/trending?window=2h"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturnFilmsByIdsInRequestedOrder() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Film film = new Film();
+            film.setName("multi" + i);
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2007, 7, 7));
+            film.setDuration(70);
+            ids.add(filmService.create(film).getId());
+        }
+
+        mockMvc.perform(get("/films").param("ids", ids.get(1).toString(), ids.get(0).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("[0].id").value(ids.get(1)))
+                .andExpect(jsonPath("[1].id").value(ids.get(0)));
+        mockMvc.perform(get("/films").param("ids", "abc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldServeFilmListsAsSmileAndCbor() throws Exception {
+        User user = new User();
+        user.setEmail("binary@yandex.ru");
+        user.setLogin("binary");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        Long userId = userService.create(user).getId();
+        for (int i = 0; i < 3; i++) {
+            Film film = new Film();
+            film.setName("binary" + i);
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2007, 7, 7));
+            film.setDuration(70);
+            Long filmId = filmService.create(film).getId();
+            if (i > 0) filmService.addLike(filmId, userId);
+        }
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+        MediaType cbor = MediaType.parseMediaType("application/cbor");
+
+        for (String path : List.of("/films", "/films/popular")) {
+            String json = mockMvc.perform(get(path).accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            byte[] smileBody = mockMvc.perform(get(path).accept(smile))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(smile))
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsByteArray();
+            byte[] cborBody = mockMvc.perform(get(path).accept(cbor))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(cbor))
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsByteArray();
+
+            assertEquals(objectMapper.readTree(json), new ObjectMapper(new SmileFactory()).readTree(smileBody));
+            assertEquals(objectMapper.readTree(json), new ObjectMapper(new CBORFactory()).readTree(cborBody));
+        }
+    }
+
+    @Test
+    void negotiatedResponses_shouldVaryByAcceptAndTagEachFormat() throws Exception {
+        Film film = new Film();
+        film.setName("vary");
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2007, 7, 7));
+        film.setDuration(70);
+        Long filmId = filmService.create(film).getId();
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+
+        String jsonTag = mockMvc.perform(get("/films/" + filmId).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getHeader("ETag");
+        String smileTag = mockMvc.perform(get("/films/" + filmId).accept(smile).header("If-None-Match", jsonTag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(smile))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(jsonTag, smileTag);
+
+        mockMvc.perform(get("/films/" + filmId).accept(smile).header("If-None-Match", smileTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        mockMvc.perform(get("/films").accept(smile))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        mockMvc.perform(get("/films/popular").param("year", "2007").accept(smile))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+    }
+
+    @Test
+    void popular_shouldServeCachedBytesUntilRankingChanges() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Film film = new Film();
+            film.setName("cached" + i);
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2007, 7, 7));
+            film.setDuration(70);
+            ids.add(filmService.create(film).getId());
+        }
+        User user = new User();
+        user.setEmail("cache@yandex.ru");
+        user.setLogin("cache");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        Long userId = userService.create(user).getId();
+
+        String plain = mockMvc.perform(get("/films/popular").param("count", "50"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        double ratio = popularResponseCache.hitRatio();
+        byte[] gzipped = mockMvc.perform(get("/films/popular").param("count", "50")
+                        .header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+        assertTrue(popularResponseCache.hitRatio() > ratio);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertEquals(objectMapper.readTree(plain), objectMapper.readTree(in));
+        }
+        mockMvc.perform(get("/films/popular").param("count", "50").header("Accept-Encoding", "gzip;q=0, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"));
+        String plainTag = mockMvc.perform(get("/films/popular").param("count", "50"))
+                .andReturn().getResponse().getHeader("ETag");
+        String gzipTag = mockMvc.perform(get("/films/popular").param("count", "50").header("Accept-Encoding", "gzip"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(plainTag, gzipTag);
+
+        filmService.addLike(ids.get(49), userId);
+
+        mockMvc.perform(get("/films/popular").param("count", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].id").value(ids.get(49)));
+    }
+
+    @Test
+    void popularCache_shouldServeLastBodyWithinStalenessBound() throws Exception {
+        FilmStorage storage = new InMemoryFilmStorage();
+        PopularResponseCache cache = new PopularResponseCache(storage, objectMapper);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxCount", 100);
+        // Фоновая пересборка не успеет пройти, а собранное тело считается свежим минуту.
+        ReflectionTestUtils.setField(cache, "refreshDelayMillis", 60_000L);
+        ReflectionTestUtils.setField(cache, "maxStaleMillis", 60_000L);
+        cache.start();
+        try {
+            Film film = new Film();
+            film.setName("stale");
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2007, 7, 7));
+            film.setDuration(70);
+            Long filmId = storage.create(film).getId();
+            PopularResponseCache.Body first = cache.get(10, false);
+
+            storage.addLike(filmId, 1L);
+            PopularResponseCache.Body stale = cache.get(10, false);
+            assertEquals(first.build(), stale.build());
+            assertEquals(0, objectMapper.readTree(stale.bytes()).get(0).get("likes").size());
+
+            ReflectionTestUtils.setField(cache, "maxStaleNanos", 0L);
+            PopularResponseCache.Body fresh = cache.get(10, false);
+            assertNotEquals(first.build(), fresh.build());
+            assertEquals(1, objectMapper.readTree(fresh.bytes()).get(0).get("likes").size());
+        } finally {
+            cache.stop();
+        }
+    }
+}
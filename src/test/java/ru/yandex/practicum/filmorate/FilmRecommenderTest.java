@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FilmRecommenderTest {
+    private static final int FILMS = 60;
+    private static final int USERS = 100;
+    private static final int LIMIT = 10;
+
+    @Test
+    void similar_shouldRankByCoLikes() {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        for (int i = 0; i < 4; i++) {
+            filmStorage.create(film(i));
+        }
+        // Фильм 1 лайкнули пользователи 10 и 20; 2 — оба, 3 — только 10.
+        filmStorage.addLike(1L, 10L);
+        filmStorage.addLike(1L, 20L);
+        filmStorage.addLike(2L, 10L);
+        filmStorage.addLike(2L, 20L);
+        filmStorage.addLike(3L, 10L);
+        FilmRecommender recommender = recommender(filmStorage, 50);
+
+        assertArrayEquals(new long[]{2, 3}, recommender.similar(1L, LIMIT));
+        assertArrayEquals(new long[]{3}, recommender.recommend(20L, LIMIT));
+
+        filmStorage.addLike(4L, 10L);
+        filmStorage.addLike(4L, 20L);
+        filmStorage.removeLike(2L, 20L);
+        assertArrayEquals(new long[]{4, 2, 3}, recommender.similar(1L, LIMIT));
+    }
+
+    @Test
+    void incrementalUpdates_shouldMatchRebuild() {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        for (int i = 0; i < FILMS; i++) {
+            filmStorage.create(film(i));
+        }
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            filmStorage.addLike((long) random.nextInt(FILMS) + 1, (long) random.nextInt(USERS) + 1);
+        }
+        FilmRecommender incremental = recommender(filmStorage, FILMS);
+        incremental.similar(1L, LIMIT);
+
+        for (int i = 0; i < 2_000; i++) {
+            long filmId = random.nextInt(FILMS) + 1;
+            long userId = random.nextInt(USERS) + 1;
+            if (random.nextInt(3) == 0) {
+                filmStorage.removeLike(filmId, userId);
+            } else {
+                filmStorage.addLike(filmId, userId);
+            }
+        }
+        // Обновление заменяет лайки фильма целиком: прежние лайкнувшие берутся из обратного индекса.
+        Film replaced = film(4);
+        replaced.setId(5L);
+        replaced.setLikes(LongSet.of(1, 2, 3));
+        filmStorage.update(replaced);
+        filmStorage.delete(7L);
+
+        FilmRecommender rebuilt = recommender(filmStorage, FILMS);
+        for (long filmId = 1; filmId <= FILMS; filmId++) {
+            if (filmId == 7) continue;
+            long[] expected = bruteForce(filmStorage, filmId);
+            assertArrayEquals(expected, rebuilt.similar(filmId, LIMIT), "film " + filmId);
+            assertArrayEquals(expected, incremental.similar(filmId, LIMIT), "film " + filmId);
+        }
+        for (long userId = 1; userId <= USERS; userId++) {
+            assertArrayEquals(rebuilt.recommend(userId, LIMIT), incremental.recommend(userId, LIMIT),
+                    "user " + userId);
+        }
+    }
+
+    @Test
+    void rows_shouldBeTrimmedToTopK() {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        for (int i = 0; i < FILMS; i++) {
+            filmStorage.create(film(i));
+        }
+        FilmRecommender recommender = recommender(filmStorage, 5);
+        recommender.similar(1L, LIMIT);
+        // Пользователь 1 лайкает все фильмы, пользователь 2 — только первые шесть.
+        for (long filmId = 1; filmId <= FILMS; filmId++) {
+            filmStorage.addLike(filmId, 1L);
+        }
+        for (long filmId = 1; filmId <= 6; filmId++) {
+            filmStorage.addLike(filmId, 2L);
+        }
+
+        assertArrayEquals(new long[]{2, 3, 4, 5, 6}, recommender.similar(1L, LIMIT));
+        assertEquals(5, recommender.similar(30L, LIMIT).length);
+    }
+
+    private static long[] bruteForce(FilmStorage filmStorage, long filmId) {
+        Film film = filmStorage.getById(filmId);
+        Map<Long, Integer> coLikes = new HashMap<>();
+        for (Film other : filmStorage.findAll()) {
+            if (other.getId() == filmId) continue;
+            int common = film.getLikes().intersectionSize(other.getLikes());
+            if (common > 0) coLikes.put(other.getId(), common);
+        }
+        return coLikes.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<Long, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .limit(LIMIT)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    private static FilmRecommender recommender(FilmStorage filmStorage, int topK) {
+        FilmRecommender recommender = new FilmRecommender(filmStorage);
+        ReflectionTestUtils.setField(recommender, "topK", topK);
+        ReflectionTestUtils.setField(recommender, "maxFanOut", 500);
+        recommender.start();
+        return recommender;
+    }
+
+    private static Film film(int i) {
+        Film film = new Film();
+        film.setName("film" + i);
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(90);
+        return film;
+    }
+}
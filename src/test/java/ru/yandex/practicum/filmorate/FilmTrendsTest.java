@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmTrends;
+import ru.yandex.practicum.filmorate.service.FilmTrends.Window;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FilmTrendsTest {
+    private static final Instant START = Instant.parse("2024-03-01T12:00:10Z");
+
+    private final FilmStorage filmStorage = new InMemoryFilmStorage();
+    private final FilmTrends trends = new FilmTrends(filmStorage);
+
+    @Test
+    void windows_shouldDropLikesAsBucketsRotate() {
+        for (int i = 0; i < 3; i++) {
+            filmStorage.create(film(i));
+        }
+        trends.start();
+
+        at(Duration.ZERO);
+        like(1, 10, 11, 12);
+        like(2, 10);
+        at(Duration.ofMinutes(30));
+        like(2, 11, 12, 13);
+        like(3, 10);
+        filmStorage.removeLike(3L, 10L);
+
+        assertEquals(List.of(2L, 1L, 3L), trends.top(Window.HOUR, 10));
+        assertEquals(List.of(2L), trends.top(Window.HOUR, 1));
+
+        at(Duration.ofMinutes(61));
+        assertEquals(List.of(2L, 3L), trends.top(Window.HOUR, 10));
+        assertEquals(List.of(2L, 1L, 3L), trends.top(Window.DAY, 10));
+
+        at(Duration.ofHours(24).plusMinutes(20));
+        like(3, 11);
+        assertEquals(List.of(3L), trends.top(Window.HOUR, 10));
+        assertEquals(List.of(2L, 3L), trends.top(Window.DAY, 10));
+        assertEquals(List.of(2L, 1L, 3L), trends.top(Window.WEEK, 10));
+
+        at(Duration.ofDays(8));
+        assertEquals(List.of(), trends.top(Window.WEEK, 10));
+    }
+
+    @Test
+    void deletedFilm_shouldLeaveTrends() {
+        filmStorage.create(film(1));
+        filmStorage.create(film(2));
+        trends.start();
+        at(Duration.ZERO);
+        like(1, 10, 11);
+        like(2, 10);
+
+        filmStorage.delete(1L);
+        at(Duration.ofHours(2));
+
+        assertEquals(List.of(2L), trends.top(Window.DAY, 10));
+        assertEquals(List.of(), trends.top(Window.HOUR, 10));
+    }
+
+    @Test
+    void parse_shouldRejectUnknownWindow() {
+        assertEquals(Window.WEEK, Window.parse("7d"));
+        assertThrows(ValidationException.class, () -> Window.parse("30d"));
+    }
+
+    private void at(Duration offset) {
+        ReflectionTestUtils.setField(trends, "clock", Clock.fixed(START.plus(offset), ZoneOffset.UTC));
+    }
+
+    private void like(long filmId, long... userIds) {
+        for (long userId : userIds) {
+            filmStorage.addLike(filmId, userId);
+        }
+    }
+
+    private static Film film(int i) {
+        Film film = new Film();
+        film.setName("film" + i);
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(90);
+        return film;
+    }
+}
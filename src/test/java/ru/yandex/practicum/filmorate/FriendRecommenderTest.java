@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FriendRecommender;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class FriendRecommenderTest {
+    private static final int USERS = 200;
+    private static final int LIMIT = 20;
+
+    @Test
+    void recommend_shouldRankByMutualFriends() {
+        UserStorage userStorage = new InMemoryUserStorage();
+        for (int i = 0; i < 5; i++) {
+            userStorage.create(user(i));
+        }
+        // 1 дружит с 2 и 3; 4 дружит с 2 и 3, 5 — только с 2.
+        userStorage.addFriend(1L, 2L);
+        userStorage.addFriend(1L, 3L);
+        userStorage.addFriend(4L, 2L);
+        userStorage.addFriend(4L, 3L);
+        userStorage.addFriend(5L, 2L);
+
+        for (boolean cache : new boolean[]{false, true}) {
+            FriendRecommender recommender = recommender(userStorage, cache);
+            assertArrayEquals(new long[]{4, 5}, recommender.recommend(userStorage.getById(1L), LIMIT));
+            assertArrayEquals(new long[]{4}, recommender.recommend(userStorage.getById(1L), 1));
+        }
+    }
+
+    @Test
+    void cache_shouldFollowFriendChanges() {
+        UserStorage userStorage = new InMemoryUserStorage();
+        for (int i = 0; i < USERS; i++) {
+            userStorage.create(user(i));
+        }
+        FriendRecommender cached = recommender(userStorage, true);
+        FriendRecommender traversal = recommender(userStorage, false);
+        Random random = new Random(7);
+
+        for (int step = 0; step < 3_000; step++) {
+            long userId = random.nextInt(USERS) + 1;
+            long friendId = random.nextInt(USERS) + 1;
+            if (userId == friendId) continue;
+            if (random.nextInt(4) == 0) {
+                userStorage.removeFriend(userId, friendId);
+            } else {
+                userStorage.addFriend(userId, friendId);
+            }
+            if (step % 300 == 0) {
+                for (long id = 1; id <= USERS; id += 17) {
+                    User user = userStorage.getById(id);
+                    long[] expected = bruteForce(userStorage, user);
+                    assertArrayEquals(expected, cached.recommend(user, LIMIT), "user " + id + " at step " + step);
+                    assertArrayEquals(expected, traversal.recommend(user, LIMIT), "user " + id + " at step " + step);
+                }
+            }
+        }
+
+        // Обновление пользователя заменяет список друзей целиком.
+        User replacement = user(2);
+        replacement.setId(3L);
+        replacement.setFriends(LongSet.of(1, 2));
+        userStorage.update(replacement);
+        for (long id = 1; id <= USERS; id++) {
+            User user = userStorage.getById(id);
+            assertArrayEquals(bruteForce(userStorage, user), cached.recommend(user, LIMIT),
+                    "user " + id + " after update");
+        }
+    }
+
+    private static long[] bruteForce(UserStorage userStorage, User user) {
+        Map<Long, Integer> mutual = new HashMap<>();
+        user.getFriends().forEachLong(friendId -> userStorage.getById(friendId).getFriends()
+                .forEachLong(candidate -> mutual.merge(candidate, 1, Integer::sum)));
+        return mutual.entrySet().stream()
+                .filter(e -> e.getKey().longValue() != user.getId() && !user.getFriends().contains(e.getKey().longValue()))
+                .sorted(Comparator.<Map.Entry<Long, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .limit(LIMIT)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    private static FriendRecommender recommender(UserStorage userStorage, boolean cacheEnabled) {
+        FriendRecommender recommender = new FriendRecommender(userStorage);
+        ReflectionTestUtils.setField(recommender, "maxFanOut", USERS);
+        ReflectionTestUtils.setField(recommender, "maxLimit", 100);
+        ReflectionTestUtils.setField(recommender, "cacheEnabled", cacheEnabled);
+        recommender.start();
+        return recommender;
+    }
+
+    private static User user(int i) {
+        User user = new User();
+        user.setEmail("user" + i + "@yandex.ru");
+        user.setLogin("user" + i);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Нагрузочный клиент для тестов производительности: {@code connections} виртуальных потоков
+ * в цикле отправляют GET-запросы в течение заданного времени.
+ */
+final class HttpLoad {
+    private HttpLoad() {
+    }
+
+    static Result run(URI uri, int connections, Duration duration) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<long[]>> futures = new ArrayList<>(connections);
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                futures.add(executor.submit(() -> {
+                    long[] latencies = new long[64];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        long begin = System.nanoTime();
+                        long latency;
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            latency = response.statusCode() == 200 ? System.nanoTime() - begin : -1;
+                        } catch (IOException e) {
+                            latency = -1;
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = latency;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        long[] all = futures.stream().map(HttpLoad::join).flatMapToLong(Arrays::stream).toArray();
+        long[] ok = Arrays.stream(all).filter(latency -> latency >= 0).sorted().toArray();
+        return new Result(ok.length, all.length - ok.length, ok.length / seconds, percentile(ok, 0.5), percentile(ok, 0.99));
+    }
+
+    private static long[] join(Future<long[]> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    record Result(long requests, long errors, double throughput, double p50Millis, double p99Millis) {
+        @Override
+        public String toString() {
+            return String.format("%.0f req/s, p50=%.2f ms, p99=%.2f ms, requests=%d, errors=%d",
+                    throughput, p50Millis, p99Millis, requests, errors);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.JdbcFilmStorage;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JdbcStorageTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldKeepFriendsAndLikesInDatabaseAcrossRestart() {
+        Long userId1;
+        Long userId2;
+        Long userId3;
+        Long filmId1;
+        Long filmId2;
+        try (ConfigurableApplicationContext context = start()) {
+            assertInstanceOf(JdbcFilmStorage.class, context.getBean(FilmStorage.class));
+            UserService userService = context.getBean(UserService.class);
+            FilmService filmService = context.getBean(FilmService.class);
+            userId1 = userService.create(user("user1")).getId();
+            userId2 = userService.create(user("user2")).getId();
+            userId3 = userService.create(user("user3")).getId();
+            userService.addFriend(userId1, userId3);
+            userService.addFriend(userId2, userId3);
+            userService.addFriend(userId1, userId2);
+            userService.removeFriend(userId1, userId2);
+            filmId1 = filmService.create(film("film1", 2001)).getId();
+            filmId2 = filmService.create(film("film2", 2010)).getId();
+            filmService.addLike(filmId1, userId1);
+            filmService.applyLikes(List.of(
+                    like(filmId2, userId1, LikeOperation.Type.ADD),
+                    like(filmId2, userId2, LikeOperation.Type.ADD),
+                    like(filmId2, userId3, LikeOperation.Type.ADD),
+                    like(filmId1, userId1, LikeOperation.Type.REMOVE)));
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            UserService userService = context.getBean(UserService.class);
+            FilmService filmService = context.getBean(FilmService.class);
+
+            assertEquals(List.of(userId3), ids(userService.getFriends(userId1)));
+            assertEquals(List.of(userId3), ids(userService.getCommonFriends(userId1, userId2)));
+            assertEquals(Set.of(userId1, userId2), Set.copyOf(userService.getById(userId3).getFriends()));
+            assertEquals(Set.of(userId1, userId2, userId3), Set.copyOf(filmService.getById(filmId2).getLikes()));
+            assertEquals(List.of(filmId2, filmId1), filmService.getByIds(List.of(filmId2, filmId2 + 100, filmId1))
+                    .stream()
+                    .map(Film::getId)
+                    .toList());
+            assertEquals(List.of(userId3, userId1), ids(userService.getByIds(List.of(userId3, userId1))));
+            assertEquals(List.of(filmId2, filmId1), filmService.getPopular(10).stream().map(Film::getId).toList());
+            assertEquals(List.of(filmId1), filmService.getPopular(10, 2001, null, null).stream()
+                    .map(Film::getId)
+                    .toList());
+            assertEquals(filmId2 + 1, filmService.create(film("film3", 2020)).getId());
+        }
+    }
+
+    @Test
+    void unknownUserInBody_shouldBeNotFound() {
+        try (ConfigurableApplicationContext context = start()) {
+            UserService userService = context.getBean(UserService.class);
+            FilmService filmService = context.getBean(FilmService.class);
+            Long userId = userService.create(user("user1")).getId();
+            Film film = film("film1", 2001);
+            film.setLikes(Set.of(userId, userId + 100));
+
+            assertThrows(NotFoundException.class, () -> filmService.create(film));
+            User friendOfUnknown = user("user2");
+            friendOfUnknown.setFriends(Set.of(userId + 100));
+            assertThrows(NotFoundException.class, () -> userService.create(friendOfUnknown));
+            assertEquals(0, filmService.findAll().size());
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                .profiles("jdbc")
+                .properties(
+                        "spring.main.web-application-type=none",
+                        "spring.datasource.url=jdbc:h2:file:" + dir.resolve("filmorate"))
+                .run();
+    }
+
+    private static List<Long> ids(Iterable<User> users) {
+        List<Long> ids = new ArrayList<>();
+        users.forEach(user -> ids.add(user.getId()));
+        return ids;
+    }
+
+    private static LikeOperation like(Long filmId, Long userId, LikeOperation.Type op) {
+        LikeOperation operation = new LikeOperation();
+        operation.setFilmId(filmId);
+        operation.setUserId(userId);
+        operation.setOp(op);
+        return operation;
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@yandex.ru");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+
+    private static Film film(String name, int year) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(year, 7, 7));
+        film.setDuration(70);
+        return film;
+    }
+}
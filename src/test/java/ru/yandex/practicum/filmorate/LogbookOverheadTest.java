@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+
+/**
+ * Пропускная способность при полном журнале запросов (TRACE, синхронная запись всех тел)
+ * и в режиме профиля {@code prod} (выборка 1%, асинхронная запись).
+ * Запуск: {@code mvn test -Dbenchmark=true -Dtest=LogbookOverheadTest}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class LogbookOverheadTest {
+    private static final int CONNECTIONS = 64;
+    private static final Duration DURATION = Duration.ofSeconds(10);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void throughput_fullTraceVersusSampled() throws Exception {
+        HttpLoad.Result full = measure("default");
+        HttpLoad.Result sampled = measure("prod");
+        System.out.println("full TRACE logging: " + full);
+        System.out.println("sampled (prod):     " + sampled);
+    }
+
+    private HttpLoad.Result measure(String profile) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .profiles(profile)
+                .properties("server.port=0",
+                        "logging.file.name=" + dir.resolve(profile + ".log"),
+                        "logging.pattern.console=")
+                .run()) {
+            Film film = new Film();
+            film.setName("film");
+            film.setDescription("d".repeat(200));
+            film.setReleaseDate(LocalDate.of(2007, 7, 7));
+            film.setDuration(70);
+            Long id = context.getBean(FilmService.class).create(film).getId();
+            FilmStorage filmStorage = context.getBean(FilmStorage.class);
+            for (long userId = 1; userId <= 500; userId++) {
+                filmStorage.addLike(id, userId);
+            }
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + "/films/" + id);
+            HttpLoad.run(uri, CONNECTIONS, Duration.ofSeconds(3));
+            return HttpLoad.run(uri, CONNECTIONS, DURATION);
+        }
+    }
+}
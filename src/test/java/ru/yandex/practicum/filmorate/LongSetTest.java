@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongSetTest {
+    private static final int LIKES = 1_000_000;
+
+    @Test
+    void shouldBehaveLikeSortedSet() {
+        Random random = new Random(7);
+        for (int bound : new int[]{100, 5_000, 200_000}) {
+            LongSet set = new LongSet();
+            TreeSet<Long> expected = new TreeSet<>();
+            for (int i = 0; i < 20_000; i++) {
+                long value = random.nextInt(bound);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(value), set.remove(value));
+                } else {
+                    assertEquals(expected.add(value), set.add(value));
+                }
+            }
+            assertEquals(expected.size(), set.size());
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+            for (int i = 0; i < 1_000; i++) {
+                long value = random.nextInt(bound);
+                assertEquals(expected.contains(value), set.contains(value));
+            }
+        }
+    }
+
+    @Test
+    void intersection_shouldMatchRetainAll() {
+        Random random = new Random(11);
+        int[][] shapes = {{10, 10, 1_000}, {10, 3_000, 5_000}, {3_000, 4_000, 6_000}, {50, 2_000, 1_000_000}};
+        for (int[] shape : shapes) {
+            LongSet a = new LongSet();
+            LongSet b = new LongSet();
+            Set<Long> expected = new TreeSet<>();
+            while (a.size() < shape[0]) {
+                a.add(random.nextInt(shape[2]));
+            }
+            while (b.size() < shape[1]) {
+                b.add(random.nextInt(shape[2]));
+            }
+            expected.addAll(a);
+            expected.retainAll(b);
+
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(a.intersect(b)));
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(b.intersect(a)));
+            assertEquals(expected.size(), a.intersectionSize(b));
+        }
+    }
+
+    @Test
+    void update_shouldApplyAdditionsAndRemovals() {
+        Random random = new Random(5);
+        for (int size : new int[]{10, 3_000, 100_000}) {
+            LongSet set = new LongSet();
+            TreeSet<Long> expected = new TreeSet<>();
+            while (set.size() < size) {
+                long value = random.nextInt(size * 2);
+                set.add(value);
+                expected.add(value);
+            }
+            for (int batch : new int[]{5, 5_000}) {
+                TreeSet<Long> additions = new TreeSet<>();
+                TreeSet<Long> removals = new TreeSet<>();
+                for (int i = 0; i < batch; i++) {
+                    long value = random.nextInt(size * 2);
+                    if (random.nextBoolean()) {
+                        removals.remove(value);
+                        additions.add(value);
+                    } else {
+                        additions.remove(value);
+                        removals.add(value);
+                    }
+                }
+                set.update(LongSet.copyOf(additions), LongSet.copyOf(removals));
+                expected.addAll(additions);
+                expected.removeAll(removals);
+                assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+            }
+        }
+    }
+
+    @Test
+    void snapshot_shouldNotSeeLaterChanges() {
+        LongSet set = LongSet.of(3, 1, 2);
+        LongSet snapshot = set.snapshot();
+        set.add(4);
+        set.remove(1);
+
+        assertEquals(List.of(1L, 2L, 3L), new ArrayList<>(snapshot));
+        assertEquals(List.of(2L, 3L, 4L), new ArrayList<>(set));
+    }
+
+    @Test
+    void snapshots_shouldDivergeFromSharedLog() {
+        Random random = new Random(3);
+        for (int bound : new int[]{300, 20_000}) {
+            List<LongSet> sets = new ArrayList<>(List.of(new LongSet()));
+            List<TreeSet<Long>> expected = new ArrayList<>(List.of(new TreeSet<>()));
+            for (int i = 0; i < 30_000; i++) {
+                int k = random.nextInt(sets.size());
+                long value = random.nextInt(bound);
+                if (random.nextInt(200) == 0 && sets.size() < 8) {
+                    sets.add(sets.get(k).snapshot());
+                    expected.add(new TreeSet<>(expected.get(k)));
+                } else if (random.nextInt(3) == 0) {
+                    assertEquals(expected.get(k).remove(value), sets.get(k).remove(value));
+                } else {
+                    assertEquals(expected.get(k).add(value), sets.get(k).add(value));
+                }
+            }
+            for (int k = 0; k < sets.size(); k++) {
+                assertEquals(expected.get(k).size(), sets.get(k).size());
+                assertEquals(new ArrayList<>(expected.get(k)), new ArrayList<>(sets.get(k)));
+                assertEquals(expected.get(k).size(), sets.get(k).intersectionSize(LongSet.copyOf(expected.get(k))));
+            }
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void memoryFootprint_atMillionLikes() {
+        Random random = new Random(1);
+        int films = 1_000;
+
+        long before = usedHeap();
+        List<Set<Long>> boxed = new ArrayList<>(films);
+        for (int f = 0; f < films; f++) {
+            Set<Long> likes = new HashSet<>();
+            while (likes.size() < LIKES / films) {
+                likes.add((long) random.nextInt(LIKES) + 1);
+            }
+            boxed.add(likes);
+        }
+        long boxedBytes = usedHeap() - before;
+
+        List<LongSet> sparse = new ArrayList<>(films);
+        for (Set<Long> likes : boxed) {
+            sparse.add(LongSet.copyOf(likes));
+        }
+        long sparseBytes = sparse.stream().mapToLong(LongSet::estimatedBytes).sum();
+        boxed.clear();
+
+        LongSet dense = new LongSet();
+        for (long userId = 1; userId <= LIKES; userId++) {
+            dense.add(userId);
+        }
+
+        System.out.printf("bytes per like: HashSet<Long>=%.1f, LongSet (1000 films)=%.1f, LongSet (one film)=%.2f%n",
+                (double) boxedBytes / LIKES, (double) sparseBytes / LIKES, (double) dense.estimatedBytes() / LIKES);
+        assertTrue(sparseBytes / LIKES <= 9);
+        assertTrue(dense.estimatedBytes() / LIKES < 1);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
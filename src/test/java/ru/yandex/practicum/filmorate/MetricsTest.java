@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Test
+    void prometheusEndpoint_shouldExposeRequestStorageAndSizeMetrics() throws Exception {
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2007, 7, 7));
+        film.setDuration(70);
+        Long filmId = filmStorage.create(film).getId();
+
+        User user = new User();
+        user.setEmail("metrics@yandex.ru");
+        user.setLogin("metrics");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        Long userId = userStorage.create(user).getId();
+        filmStorage.addLike(filmId, userId);
+
+        mockMvc.perform(get("/films/popular"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("uri=\"/films/popular\"")))
+                .andExpect(content().string(containsString("quantile=\"0.99\"")))
+                .andExpect(content().string(containsString("filmorate_storage_seconds_count{")))
+                .andExpect(content().string(containsString("method=\"getPopular\"")))
+                .andExpect(content().string(containsString("filmorate_films ")))
+                .andExpect(content().string(containsString("filmorate_likes ")))
+                .andExpect(content().string(containsString("filmorate_friend_links ")));
+
+        filmStorage.delete(filmId);
+        userStorage.delete(userId);
+    }
+}
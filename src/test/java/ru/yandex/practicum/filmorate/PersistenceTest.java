@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.persistence.PersistenceManager;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PersistenceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldRestoreStateFromSnapshotAndLogAfterRestart() throws Exception {
+        Long userId1;
+        Long userId2;
+        Long filmId1;
+        Long filmId2;
+        try (ConfigurableApplicationContext context = start()) {
+            UserService userService = context.getBean(UserService.class);
+            FilmService filmService = context.getBean(FilmService.class);
+            userId1 = userService.create(user("user1")).getId();
+            userId2 = userService.create(user("user2")).getId();
+            userService.addFriend(userId1, userId2);
+            filmId1 = filmService.create(film("film1")).getId();
+            filmService.addLike(filmId1, userId1);
+
+            context.getBean(PersistenceManager.class).compact();
+
+            filmId2 = filmService.create(film("film2")).getId();
+            filmService.addLike(filmId2, userId1);
+            filmService.addLike(filmId2, userId2);
+            filmService.removeLike(filmId1, userId1);
+            Film renamed = film("film1-renamed");
+            renamed.setId(filmId1);
+            filmService.update(renamed);
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            UserService userService = context.getBean(UserService.class);
+            FilmService filmService = context.getBean(FilmService.class);
+
+            assertEquals(Set.of(userId2), Set.copyOf(userService.getById(userId1).getFriends()));
+            assertEquals(Set.of(userId1), Set.copyOf(userService.getById(userId2).getFriends()));
+            assertEquals("film1-renamed", filmService.getById(filmId1).getName());
+            assertEquals(Set.of(), Set.copyOf(filmService.getById(filmId1).getLikes()));
+            assertEquals(Set.of(userId1, userId2), Set.copyOf(filmService.getById(filmId2).getLikes()));
+            assertEquals(List.of(filmId2, filmId1),
+                    filmService.getPopular(2).stream().map(Film::getId).toList());
+            assertEquals(filmId2 + 1, filmService.create(film("film3")).getId());
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                .properties(
+                        "spring.main.web-application-type=none",
+                        "filmorate.persistence.enabled=true",
+                        "filmorate.persistence.fsync=always",
+                        "filmorate.persistence.dir=" + dir)
+                .run();
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@yandex.ru");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2007, 7, 7));
+        film.setDuration(70);
+        return film;
+    }
+}
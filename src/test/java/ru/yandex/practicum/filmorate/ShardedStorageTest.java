@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ShardRing;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.ShardedFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.ShardedUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedStorageTest {
+    private static final int SHARDS = 4;
+    private static final int FILMS = 300;
+    private static final int USERS = 200;
+
+    @Test
+    void films_shouldMatchSingleNodeStorage() {
+        FilmStorage single = new InMemoryFilmStorage();
+        ShardedFilmStorage sharded = new ShardedFilmStorage();
+        ReflectionTestUtils.setField(sharded, "shardCount", SHARDS);
+        ReflectionTestUtils.setField(sharded, "virtualNodes", 64);
+        sharded.start();
+        for (int i = 0; i < FILMS; i++) {
+            assertEquals(single.create(film(i)).getId(), sharded.create(film(i)).getId());
+        }
+        Random random = new Random(5);
+        for (int step = 0; step < 5_000; step++) {
+            long filmId = random.nextInt(FILMS) + 1;
+            long userId = random.nextInt(USERS) + 1;
+            switch (random.nextInt(5)) {
+                case 0 -> {
+                    single.removeLike(filmId, userId);
+                    sharded.removeLike(filmId, userId);
+                }
+                case 1 -> {
+                    LongSet additions = LongSet.of(userId, userId + 1);
+                    LongSet removals = LongSet.of(userId + 2);
+                    single.applyLikes(filmId, additions, removals);
+                    sharded.applyLikes(filmId, additions, removals);
+                }
+                default -> {
+                    single.addLike(filmId, userId);
+                    sharded.addLike(filmId, userId);
+                }
+            }
+        }
+        single.delete(7L);
+        sharded.delete(7L);
+
+        assertEquals(single.count(), sharded.count());
+        assertEquals(single.countLikes(), sharded.countLikes());
+        assertEquals(filmIds(single.findAll()), filmIds(sharded.findAll()));
+        assertEquals(filmIds(single.findPage(50, 40)), filmIds(sharded.findPage(50, 40)));
+        List<Long> ids = List.of(9L, 7L, 250L, 1L, 1_000L);
+        assertEquals(filmIds(single.getByIds(ids)), filmIds(sharded.getByIds(ids)));
+        for (int count : new int[]{1, 10, 100, FILMS}) {
+            assertEquals(filmIds(single.getPopular(count)), filmIds(sharded.getPopular(count)));
+        }
+        LocalDate from = LocalDate.of(1950, 1, 1);
+        LocalDate to = LocalDate.of(1990, 12, 31);
+        assertEquals(filmIds(single.getPopular(20, from, to)), filmIds(sharded.getPopular(20, from, to)));
+    }
+
+    @Test
+    void users_shouldMatchSingleNodeStorage() {
+        UserStorage single = new InMemoryUserStorage();
+        ShardedUserStorage sharded = new ShardedUserStorage();
+        ReflectionTestUtils.setField(sharded, "shardCount", SHARDS);
+        ReflectionTestUtils.setField(sharded, "virtualNodes", 64);
+        sharded.start();
+        for (int i = 0; i < USERS; i++) {
+            assertEquals(single.create(user(i)).getId(), sharded.create(user(i)).getId());
+        }
+        Random random = new Random(9);
+        for (int step = 0; step < 3_000; step++) {
+            long userId = random.nextInt(USERS) + 1;
+            long friendId = random.nextInt(USERS) + 1;
+            if (random.nextInt(4) == 0) {
+                single.removeFriend(userId, friendId);
+                sharded.removeFriend(userId, friendId);
+            } else {
+                single.addFriend(userId, friendId);
+                sharded.addFriend(userId, friendId);
+            }
+        }
+
+        assertEquals(single.countFriendLinks(), sharded.countFriendLinks());
+        assertEquals(userIds(single.findAll()), userIds(sharded.findAll()));
+        for (long userId = 1; userId <= USERS; userId++) {
+            long otherId = USERS + 1 - userId;
+            assertEquals(userIds(single.getFriends(userId)), userIds(sharded.getFriends(userId)));
+            assertEquals(userIds(single.getCommonFriends(userId, otherId)),
+                    userIds(sharded.getCommonFriends(userId, otherId)));
+        }
+    }
+
+    @Test
+    void ring_shouldSpreadIdsAndMoveFewOnResize() {
+        int ids = 100_000;
+        ShardRing ring = new ShardRing(SHARDS, 128);
+        ShardRing grown = new ShardRing(SHARDS + 1, 128);
+        int[] sizes = new int[SHARDS];
+        int moved = 0;
+        for (long id = 1; id <= ids; id++) {
+            int shard = ring.shardOf(id);
+            sizes[shard]++;
+            int next = grown.shardOf(id);
+            if (next != shard) {
+                moved++;
+                // Ключ переезжает только на новый шард.
+                assertEquals(SHARDS, next);
+            }
+        }
+        for (int size : sizes) {
+            assertTrue(Math.abs(size - ids / SHARDS) < ids / SHARDS / 5, "неравномерно: " + size);
+        }
+        assertTrue(moved < ids / (SHARDS + 1) * 1.3, "переехало " + moved);
+    }
+
+    private static List<Long> filmIds(Collection<Film> films) {
+        return films.stream().map(Film::getId).toList();
+    }
+
+    private static List<Long> userIds(Collection<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+
+    private static Film film(int i) {
+        Film film = new Film();
+        film.setName("film" + i);
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(1900 + i % 120, 1, 1));
+        film.setDuration(90);
+        return film;
+    }
+
+    private static User user(int i) {
+        User user = new User();
+        user.setEmail("user" + i + "@yandex.ru");
+        user.setLogin("user" + i);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.persistence.BinarySnapshotFormat;
+import ru.yandex.practicum.filmorate.storage.persistence.JsonSnapshotFormat;
+import ru.yandex.practicum.filmorate.storage.persistence.SnapshotFormat;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.LongSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SnapshotFormatTest {
+    private static final int BENCHMARK_FILMS = 1_000_000;
+    private static final int BENCHMARK_LIKES = 5_000_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void formats_shouldRoundTripFilmsAndUsers() throws IOException {
+        List<Film> films = new ArrayList<>();
+        films.add(film(1, "Фильм", "Описание с юникодом ✓", LocalDate.of(1895, 12, 28), 90, LongSet.of(3, 1, 2)));
+        films.add(film(7, "", null, null, null, new LongSet()));
+        List<User> users = new ArrayList<>();
+        users.add(user(2, "a@yandex.ru", "login", null, LocalDate.of(2000, 1, 1), LongSet.of(5, 9)));
+        users.add(user(5, "b@yandex.ru", "другой", "Имя", null, LongSet.of(2)));
+
+        for (SnapshotFormat format : formats()) {
+            Path file = dir.resolve(format.fileName());
+            format.write(file, 42, films, users);
+
+            List<Film> readFilms = new ArrayList<>();
+            List<User> readUsers = new ArrayList<>();
+            long segment = format.read(file, readFilms::add, readUsers::add);
+            readFilms.sort(Comparator.comparing(Film::getId));
+            readUsers.sort(Comparator.comparing(User::getId));
+
+            assertEquals(42, segment);
+            assertEquals(films.size(), readFilms.size());
+            for (int i = 0; i < films.size(); i++) {
+                assertFilmEquals(films.get(i), readFilms.get(i));
+            }
+            assertEquals(users.size(), readUsers.size());
+            for (int i = 0; i < users.size(); i++) {
+                assertUserEquals(users.get(i), readUsers.get(i));
+            }
+        }
+    }
+
+    @Test
+    void binary_shouldRejectSectionsBeyondTwoGigabytes() throws IOException {
+        BinarySnapshotFormat format = new BinarySnapshotFormat();
+        Path file = dir.resolve(format.fileName());
+        format.write(file, 1, List.of(film(1, "Фильм", null, null, null, LongSet.of(2))), List.of());
+        // Число id в заголовке (смещение 24) даёт секцию больше 2 ГБ: это порча, а не повод переполнить смещение.
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, 1L << 29), 24);
+        }
+
+        assertThrows(IOException.class, () -> format.read(file, film -> { }, user -> { }));
+    }
+
+    /**
+     * Время старта с 1M фильмов и 5M лайков. Запуск: {@code mvn test -Dbenchmark=true -Dtest=SnapshotFormatTest}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void startupTime_millionFilms() throws IOException {
+        Random random = new Random(3);
+        List<Film> films = new ArrayList<>(BENCHMARK_FILMS);
+        for (int i = 1; i <= BENCHMARK_FILMS; i++) {
+            films.add(film(i, "Фильм " + i, "Описание фильма " + i, LocalDate.of(1990 + i % 30, 1 + i % 12, 1),
+                    60 + i % 120, new LongSet()));
+        }
+        for (int i = 0; i < BENCHMARK_LIKES; i++) {
+            films.get(random.nextInt(BENCHMARK_FILMS)).getLikes().add(random.nextInt(BENCHMARK_FILMS) + 1);
+        }
+
+        for (SnapshotFormat format : formats()) {
+            Path file = dir.resolve(format.fileName());
+            long writeStarted = System.nanoTime();
+            format.write(file, 0, films, List.of());
+            long writeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - writeStarted);
+
+            FilmStorage filmStorage = new InMemoryFilmStorage();
+            UserStorage userStorage = new InMemoryUserStorage();
+            long readStarted = System.nanoTime();
+            format.read(file, filmStorage::restore, userStorage::restore);
+            long readMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - readStarted);
+
+            assertEquals(BENCHMARK_FILMS, filmStorage.findAll().size());
+            System.out.printf("%s: %d MB, write %d ms, startup %d ms%n", format.fileName(),
+                    Files.size(file) >> 20, writeMillis, readMillis);
+        }
+    }
+
+    private static List<SnapshotFormat> formats() {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        return List.of(new JsonSnapshotFormat(objectMapper), new BinarySnapshotFormat());
+    }
+
+    private static void assertFilmEquals(Film expected, Film actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getReleaseDate(), actual.getReleaseDate());
+        assertEquals(expected.getDuration(), actual.getDuration());
+        assertEquals(new ArrayList<>(expected.getLikes()), new ArrayList<>(actual.getLikes()));
+    }
+
+    private static void assertUserEquals(User expected, User actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getLogin(), actual.getLogin());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getBirthday(), actual.getBirthday());
+        assertEquals(new ArrayList<>(expected.getFriends()), new ArrayList<>(actual.getFriends()));
+    }
+
+    private static Film film(long id, String name, String description, LocalDate releaseDate, Integer duration,
+                             LongSet likes) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setDescription(description);
+        film.setReleaseDate(releaseDate);
+        film.setDuration(duration);
+        film.setLikes(likes);
+        return film;
+    }
+
+    private static User user(long id, String email, String login, String name, LocalDate birthday, LongSet friends) {
+        User user = new User();
+        user.setId(id);
+        user.setEmail(email);
+        user.setLogin(login);
+        user.setName(name);
+        user.setBirthday(birthday);
+        user.setFriends(friends);
+        return user;
+    }
+}
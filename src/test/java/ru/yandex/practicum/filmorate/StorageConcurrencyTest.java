@@ -0,0 +1,270 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.event.StorageEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StorageConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int FILMS = 64;
+    private static final int LIKES_PER_THREAD = 20_000;
+
+    @Test
+    void concurrentCreates_shouldAllocateUniqueIds() throws Exception {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < 5_000; i++) {
+                ids.add(filmStorage.create(film()).getId());
+            }
+        });
+
+        assertEquals(THREADS * 5_000, ids.size());
+        assertEquals(THREADS * 5_000, filmStorage.findAll().size());
+    }
+
+    @Test
+    void concurrentLikes_shouldNotBeLost() throws Exception {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        List<Long> filmIds = createFilms(filmStorage);
+
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < LIKES_PER_THREAD; i++) {
+                long userId = (long) thread * LIKES_PER_THREAD + i;
+                filmStorage.addLike(filmIds.get(i % FILMS), userId);
+            }
+        });
+
+        long totalLikes = filmStorage.findAll().stream().mapToLong(f -> f.getLikes().size()).sum();
+        assertEquals((long) THREADS * LIKES_PER_THREAD, totalLikes);
+        assertEquals(totalLikes, filmStorage.countLikes());
+        List<Film> popular = new ArrayList<>(filmStorage.getPopular(FILMS));
+        assertEquals(FILMS, popular.size());
+        for (int i = 1; i < popular.size(); i++) {
+            assertTrue(popular.get(i - 1).getLikes().size() >= popular.get(i).getLikes().size());
+        }
+    }
+
+    @Test
+    void concurrentFriendships_shouldStaySymmetric() throws Exception {
+        UserStorage userStorage = new InMemoryUserStorage();
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            userIds.add(userStorage.create(user(i)).getId());
+        }
+
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < 10_000; i++) {
+                Long a = userIds.get((i * 7 + thread) % userIds.size());
+                Long b = userIds.get((i * 13 + thread * 3 + 1) % userIds.size());
+                if (a.equals(b)) continue;
+                if (i % 3 == 0) {
+                    userStorage.removeFriend(a, b);
+                } else {
+                    userStorage.addFriend(b, a);
+                }
+            }
+        });
+
+        for (User user : userStorage.findAll()) {
+            for (Long friendId : user.getFriends()) {
+                assertTrue(userStorage.getById(friendId).getFriends().contains(user.getId()));
+            }
+        }
+        long friendLinks = userStorage.findAll().stream().mapToLong(u -> u.getFriends().size()).sum();
+        assertEquals(friendLinks, userStorage.countFriendLinks());
+    }
+
+    @Test
+    void snapshotReads_shouldSeeWholeFriendshipsAndImmutableVersions() throws Exception {
+        UserStorage userStorage = new InMemoryUserStorage();
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            userIds.add(userStorage.create(user(i)).getId());
+        }
+        AtomicInteger torn = new AtomicInteger();
+
+        runConcurrently(THREADS, thread -> {
+            if (thread < 2) {
+                for (int i = 0; i < 300; i++) {
+                    Map<Long, User> snapshot = new HashMap<>();
+                    userStorage.findAll().forEach(user -> snapshot.put(user.getId(), user));
+                    for (User user : snapshot.values()) {
+                        for (Long friendId : user.getFriends()) {
+                            if (!snapshot.get(friendId).getFriends().contains(user.getId())) torn.incrementAndGet();
+                        }
+                    }
+                }
+                return;
+            }
+            for (int i = 0; i < 10_000; i++) {
+                Long a = userIds.get((i * 7 + thread) % userIds.size());
+                Long b = userIds.get((i * 13 + thread * 3 + 1) % userIds.size());
+                if (a.equals(b)) continue;
+                if (i % 3 == 0) {
+                    userStorage.removeFriend(a, b);
+                } else {
+                    userStorage.addFriend(b, a);
+                }
+            }
+        });
+        assertEquals(0, torn.get());
+
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        Long filmId = filmStorage.create(film()).getId();
+        Film before = filmStorage.findAll().iterator().next();
+        filmStorage.addLike(filmId, 1L);
+        assertEquals(0, before.getLikes().size());
+        assertEquals(Set.of(1L), Set.copyOf(filmStorage.getById(filmId).getLikes()));
+        assertTrue(filmStorage.getById(filmId).getVersion() > before.getVersion());
+    }
+
+    @Test
+    void catalogVersion_shouldGrowMonotonicallyAndCoverPublishedEvents() throws Exception {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            filmIds.add(filmStorage.create(film()).getId());
+        }
+        AtomicInteger regressions = new AtomicInteger();
+
+        runConcurrently(THREADS, thread -> {
+            if (thread < 2) {
+                long last = 0;
+                for (int i = 0; i < 100_000; i++) {
+                    long version = filmStorage.getVersion();
+                    if (version < last) regressions.incrementAndGet();
+                    last = version;
+                }
+                return;
+            }
+            for (int i = 0; i < LIKES_PER_THREAD; i++) {
+                filmStorage.addLike(filmIds.get((i + thread) % FILMS), (long) thread * LIKES_PER_THREAD + i);
+            }
+        });
+        assertEquals(0, regressions.get());
+
+        // Событие приходит после фиксации: без других писателей версия каталога уже покрывает изменённый фильм.
+        AtomicInteger uncommitted = new AtomicInteger();
+        filmStorage.addListener(event -> {
+            if (event instanceof StorageEvent.LikeAdded like
+                    && filmStorage.getVersion() < filmStorage.getById(like.filmId()).getVersion()) {
+                uncommitted.incrementAndGet();
+            }
+        });
+        for (int i = 0; i < 1000; i++) {
+            filmStorage.addLike(filmIds.get(i % FILMS), (long) THREADS * LIKES_PER_THREAD + i);
+        }
+        assertEquals(0, uncommitted.get());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void likeThroughput_stripedVersusGlobalLock() throws Exception {
+        ReentrantLock globalLock = new ReentrantLock();
+        for (int threads : new int[]{1, 4, THREADS}) {
+            FilmStorage striped = new InMemoryFilmStorage();
+            List<Long> stripedIds = createFilms(striped);
+            long stripedNanos = runConcurrently(threads, thread -> {
+                for (int i = 0; i < LIKES_PER_THREAD; i++) {
+                    striped.addLike(stripedIds.get(i % FILMS), (long) thread * LIKES_PER_THREAD + i);
+                }
+            });
+
+            FilmStorage global = new InMemoryFilmStorage();
+            List<Long> globalIds = createFilms(global);
+            long globalNanos = runConcurrently(threads, thread -> {
+                for (int i = 0; i < LIKES_PER_THREAD; i++) {
+                    globalLock.lock();
+                    try {
+                        global.addLike(globalIds.get(i % FILMS), (long) thread * LIKES_PER_THREAD + i);
+                    } finally {
+                        globalLock.unlock();
+                    }
+                }
+            });
+
+            long operations = (long) threads * LIKES_PER_THREAD;
+            System.out.printf("threads=%d striped=%.0f ops/s global-lock=%.0f ops/s%n", threads,
+                    operations * 1e9 / stripedNanos, operations * 1e9 / globalNanos);
+        }
+    }
+
+    private static List<Long> createFilms(FilmStorage filmStorage) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            ids.add(filmStorage.create(film()).getId());
+        }
+        return ids;
+    }
+
+    private static long runConcurrently(int threads, ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(thread);
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        return elapsed;
+    }
+
+    private static Film film() {
+        Film film = new Film();
+        film.setName("film");
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2007, 7, 7));
+        film.setDuration(70);
+        return film;
+    }
+
+    private static User user(int i) {
+        User user = new User();
+        user.setEmail("user" + i + "@yandex.ru");
+        user.setLogin("user" + i);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
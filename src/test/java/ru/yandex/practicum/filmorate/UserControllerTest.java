@@ -13,6 +13,7 @@ import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -427,4 +428,140 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.length()").value(1))
                 .andExpect(jsonPath("[0].id").value(savedUser3.getId()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReturnCommonFriendsCount() throws Exception {
+        User user1 = new User();
+        user1.setEmail("user1@yandex.ru");
+        user1.setLogin("user1234");
+        user1.setBirthday(LocalDate.of(2000,1,1));
+        User savedUser1 = userService.create(user1);
+
+        User user2 = new User();
+        user2.setEmail("user2@yandex.ru");
+        user2.setLogin("user5678");
+        user2.setBirthday(LocalDate.of(1999, 12, 31));
+        User savedUser2 = userService.create(user2);
+
+        for (int i = 0; i < 3; i++) {
+            User friend = new User();
+            friend.setEmail("friend" + i + "@yandex.ru");
+            friend.setLogin("friend" + i);
+            friend.setBirthday(LocalDate.of(1989,5,5));
+            Long friendId = userService.create(friend).getId();
+            userService.addFriend(savedUser1.getId(), friendId);
+            if (i > 0) userService.addFriend(savedUser2.getId(), friendId);
+        }
+
+        mockMvc.perform(get("/users/{id}/friends/common/{otherId}/count", savedUser1.getId(), savedUser2.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(2));
+    }
+
+    @Test
+    void shouldReturnUsersPageByCursor() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@yandex.ru");
+            user.setLogin("user" + i);
+            user.setBirthday(LocalDate.of(2000, 1, 1));
+            ids.add(userService.create(user).getId());
+        }
+
+        mockMvc.perform(get("/users").param("after", ids.get(0).toString()).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("[0].id").value(ids.get(1)));
+
+        mockMvc.perform(get("/users").param("after", ids.get(1).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("[0].id").value(ids.get(2)));
+    }
+
+    @Test
+    void friendsETag_shouldChangeWhenFriendIsUpdated() throws Exception {
+        User user = new User();
+        user.setEmail("user@yandex.ru");
+        user.setLogin("user");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        Long userId = userService.create(user).getId();
+
+        User friend = new User();
+        friend.setEmail("friend@yandex.ru");
+        friend.setLogin("friend");
+        friend.setBirthday(LocalDate.of(2000, 1, 1));
+        Long friendId = userService.create(friend).getId();
+        userService.addFriend(userId, friendId);
+
+        String tag = mockMvc.perform(get("/users/" + userId + "/friends"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/users/" + userId + "/friends").header("If-None-Match", tag))
+                .andExpect(status().isNotModified());
+
+        User renamed = new User();
+        renamed.setId(friendId);
+        renamed.setEmail("friend@yandex.ru");
+        renamed.setLogin("friend");
+        renamed.setName("renamed");
+        renamed.setBirthday(LocalDate.of(2000, 1, 1));
+        renamed.setFriends(userService.getById(friendId).getFriends());
+        userService.update(renamed);
+
+        mockMvc.perform(get("/users/" + userId + "/friends").header("If-None-Match", tag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].name").value("renamed"));
+    }
+
+    @Test
+    void recommendations_shouldRankFriendsOfFriendsByMutualFriends() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User user = new User();
+            user.setEmail("rec" + i + "@yandex.ru");
+            user.setLogin("rec" + i);
+            user.setBirthday(LocalDate.of(2000, 1, 1));
+            ids.add(userService.create(user).getId());
+        }
+        userService.addFriend(ids.get(0), ids.get(1));
+        userService.addFriend(ids.get(0), ids.get(2));
+        userService.addFriend(ids.get(3), ids.get(1));
+        userService.addFriend(ids.get(3), ids.get(2));
+        userService.addFriend(ids.get(4), ids.get(1));
+
+        mockMvc.perform(get("/users/" + ids.get(0) + "/recommendations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("[0].id").value(ids.get(3)))
+                .andExpect(jsonPath("[1].id").value(ids.get(4)));
+
+        mockMvc.perform(get("/users/" + ids.get(0) + "/recommendations?count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+
+        mockMvc.perform(get("/users/" + ids.get(0) + "/recommendations?count=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturnUsersByIdsInRequestedOrder() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setEmail("multi" + i + "@yandex.ru");
+            user.setLogin("multi" + i);
+            user.setBirthday(LocalDate.of(2000, 1, 1));
+            ids.add(userService.create(user).getId());
+        }
+        long missing = ids.get(2) + 100;
+
+        mockMvc.perform(get("/users").param("ids", ids.get(2) + "," + missing + "," + ids.get(0)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("[0].id").value(ids.get(2)))
+                .andExpect(jsonPath("[1].id").value(ids.get(0)));
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDate;
+
+/**
+ * p99 и пропускная способность при 10 000 одновременных соединений: пул платформенных потоков Tomcat
+ * против виртуальных потоков ({@code spring.threads.virtual.enabled}).
+ * Запуск: {@code mvn test -Dbenchmark=true -Dtest=VirtualThreadLoadTest}; нужен {@code ulimit -n} не меньше 25 000.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class VirtualThreadLoadTest {
+    private static final int CONNECTIONS = 10_000;
+    private static final Duration DURATION = Duration.ofSeconds(20);
+
+    @Test
+    void platformVersusVirtualThreads() throws Exception {
+        HttpLoad.Result platform = measure(false);
+        HttpLoad.Result virtual = measure(true);
+        System.out.println("platform threads: " + platform);
+        System.out.println("virtual threads:  " + virtual);
+    }
+
+    private HttpLoad.Result measure(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .properties("server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "server.tomcat.max-connections=" + 2 * CONNECTIONS,
+                        "server.tomcat.accept-count=" + CONNECTIONS,
+                        "logging.level.org.zalando.logbook=INFO")
+                .run()) {
+            FilmService filmService = context.getBean(FilmService.class);
+            UserService userService = context.getBean(UserService.class);
+            for (int i = 0; i < 1_000; i++) {
+                User user = new User();
+                user.setEmail("user" + i + "@yandex.ru");
+                user.setLogin("user" + i);
+                user.setBirthday(LocalDate.of(2000, 1, 1));
+                Long userId = userService.create(user).getId();
+
+                Film film = new Film();
+                film.setName("film" + i);
+                film.setDescription("description");
+                film.setReleaseDate(LocalDate.of(2007, 7, 7));
+                film.setDuration(70);
+                Long filmId = filmService.create(film).getId();
+                for (long target = Math.max(1, filmId - i % 50); target <= filmId; target++) {
+                    filmService.addLike(target, userId);
+                }
+            }
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + "/films/popular?count=10");
+            HttpLoad.run(uri, CONNECTIONS, Duration.ofSeconds(5));
+            return HttpLoad.run(uri, CONNECTIONS, DURATION);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.storage.persistence.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WriteAheadLogTest {
+    private static final int THREADS = 4;
+    private static final int APPENDS_PER_THREAD = 500;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldReadBackRecordsAndSkipTornTail() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 0, WriteAheadLog.FsyncPolicy.ALWAYS, Duration.ZERO)) {
+            for (int i = 0; i < 3; i++) {
+                wal.append(("record" + i).getBytes(StandardCharsets.UTF_8)).join();
+            }
+        }
+        Path segment;
+        try (var files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        List<String> records = new ArrayList<>();
+        WriteAheadLog.read(dir, 0, payload -> records.add(new String(payload, StandardCharsets.UTF_8)));
+
+        assertEquals(List.of("record0", "record1", "record2"), records);
+    }
+
+    @Test
+    void shouldTreatOutOfRangeLengthAsTornTail() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 0, WriteAheadLog.FsyncPolicy.ALWAYS, Duration.ZERO)) {
+            wal.append("record0".getBytes(StandardCharsets.UTF_8)).join();
+        }
+        Path segment;
+        try (var files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // Заголовок с длиной почти 2 ГБ: читать её в буфер нельзя, это такой же оборванный хвост.
+        Files.write(segment, new byte[]{0x7F, -1, -1, -16, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        List<String> records = new ArrayList<>();
+        WriteAheadLog.read(dir, 0, payload -> records.add(new String(payload, StandardCharsets.UTF_8)));
+
+        assertEquals(List.of("record0"), records);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void writeLatency_byFsyncPolicy() throws Exception {
+        byte[] payload = new byte[200];
+        for (WriteAheadLog.FsyncPolicy policy : WriteAheadLog.FsyncPolicy.values()) {
+            Path policyDir = dir.resolve(policy.name());
+            long[] latencies = new long[THREADS * APPENDS_PER_THREAD];
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try (WriteAheadLog wal = new WriteAheadLog(policyDir, 0, policy, Duration.ofMillis(10))) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    int thread = t;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < APPENDS_PER_THREAD; i++) {
+                            long start = System.nanoTime();
+                            CompletableFuture<Void> written = wal.append(payload);
+                            if (policy == WriteAheadLog.FsyncPolicy.ALWAYS) {
+                                written.join();
+                            }
+                            latencies[thread * APPENDS_PER_THREAD + i] = System.nanoTime() - start;
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            long[] count = {0};
+            WriteAheadLog.read(policyDir, 0, bytes -> count[0]++);
+            assertEquals(latencies.length, count[0]);
+
+            Arrays.sort(latencies);
+            System.out.printf("fsync=%s p50=%dus p99=%dus max=%dus%n", policy,
+                    latencies[latencies.length / 2] / 1000,
+                    latencies[(int) (latencies.length * 0.99)] / 1000,
+                    latencies[latencies.length - 1] / 1000);
+        }
+    }
+}